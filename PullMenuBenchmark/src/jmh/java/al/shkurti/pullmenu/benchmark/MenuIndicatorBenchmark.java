@@ -0,0 +1,86 @@
+package al.shkurti.pullmenu.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+import al.shkurti.pullmenu.library.gesture.MenuPositionMapper;
+
+/**
+ * Measures the per-event mappings done on every pull frame. pullProgress runs the whole mapping
+ * PullGestureEngine does for each pulled distance: the pulled fraction, the progress percentage
+ * and the menu item looked up in the table. menuPosition and menuPositionTable isolate the
+ * percentage to menu item step (MenuSlidingTabStrip.changeMenuIndicatorPosition), computed and
+ * looked up in the table the strip builds. Scores are per event.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@State(Scope.Thread)
+public class MenuIndicatorBenchmark {
+
+    private static final int EVENTS = 10000;
+    private static final float SCROLL_NEEDED_FOR_REFRESH = 1000f;
+
+    @Param({"2", "4", "6"})
+    public int menuItemCount;
+
+    private float[] mScrollLengths;
+    private int[] mPercentages;
+    private final byte[] mPositionTable = new byte[MenuPositionMapper.TABLE_SIZE];
+
+    @Setup
+    public void setup() {
+        final TouchStream stream = TouchStream.pulls(EVENTS / 100, 98, 120, 900f);
+        mScrollLengths = new float[EVENTS];
+        mPercentages = new int[EVENTS];
+        for (int i = 0; i < EVENTS; i++) {
+            mScrollLengths[i] = Math.min(SCROLL_NEEDED_FOR_REFRESH,
+                    Math.max(0f, stream.ys[i] - 100f));
+            mPercentages[i] = MenuPositionMapper.getPercentage(
+                    mScrollLengths[i] / SCROLL_NEEDED_FOR_REFRESH, 100);
+        }
+        MenuPositionMapper.fillTable(mPositionTable, menuItemCount, null);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(EVENTS)
+    public void pullProgress(Blackhole blackhole) {
+        final float[] scrollLengths = mScrollLengths;
+        final byte[] table = mPositionTable;
+        for (int i = 0; i < EVENTS; i++) {
+            final float fraction = scrollLengths[i] / SCROLL_NEEDED_FOR_REFRESH;
+            final int percentage = MenuPositionMapper.getPercentage(fraction, 100);
+            blackhole.consume(fraction);
+            blackhole.consume(MenuPositionMapper.lookup(table, percentage));
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(EVENTS)
+    public void menuPosition(Blackhole blackhole) {
+        final int[] percentages = mPercentages;
+        final int count = menuItemCount;
+        for (int i = 0; i < EVENTS; i++) {
+            blackhole.consume(MenuPositionMapper.getPosition(count, percentages[i]));
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(EVENTS)
+    public void menuPositionTable(Blackhole blackhole) {
+        final int[] percentages = mPercentages;
+        final byte[] table = mPositionTable;
+        for (int i = 0; i < EVENTS; i++) {
+            blackhole.consume(MenuPositionMapper.lookup(table, percentages[i]));
+        }
+    }
+}
@@ -0,0 +1,70 @@
+package al.shkurti.pullmenu.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+import al.shkurti.pullmenu.library.gesture.PullGestureEngine;
+
+/**
+ * Replays a MOVE heavy event stream through {@link PullGestureEngine} the same way
+ * PullMenuLayout dispatches it: every event goes through onInterceptTouchEvent until the pull
+ * starts and through onTouchEvent afterwards. Scores are per event.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@State(Scope.Thread)
+public class PullGestureBenchmark {
+
+    private static final int GESTURES = 100;
+    private static final int MOVES_PER_GESTURE = 98;
+    private static final int EVENTS = GESTURES * (MOVES_PER_GESTURE + 2);
+
+    @Param({"120", "240"})
+    public int sampleRateHz;
+
+    @Param({"4"})
+    public int menuItemCount;
+
+    private TouchStream mStream;
+    private PullGestureEngine mEngine;
+
+    @Setup
+    public void setup() {
+        mStream = TouchStream.pulls(GESTURES, MOVES_PER_GESTURE, sampleRateHz, 900f);
+        mEngine = new PullGestureEngine(16f, false);
+        mEngine.setScrollNeededForRefresh(1000f);
+        mEngine.setMenuItemCount(menuItemCount);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(EVENTS)
+    public void replay(Blackhole blackhole) {
+        final TouchStream stream = mStream;
+        final PullGestureEngine engine = mEngine;
+        for (int i = 0; i < stream.size; i++) {
+            final int action = stream.actions[i];
+            final int result;
+            if (!engine.isBeingDragged()) {
+                result = engine.onInterceptTouchEvent(action, stream.xs[i], stream.ys[i],
+                        stream.times[i], true);
+            } else {
+                result = engine.onTouchEvent(action, stream.xs[i], stream.ys[i], stream.times[i]);
+                if (action == PullGestureEngine.ACTION_UP) {
+                    engine.reset();
+                }
+            }
+            blackhole.consume(result);
+            blackhole.consume(engine.getSelectedMenuIndex());
+        }
+    }
+}
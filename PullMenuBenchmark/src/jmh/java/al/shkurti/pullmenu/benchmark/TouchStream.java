@@ -0,0 +1,69 @@
+package al.shkurti.pullmenu.benchmark;
+
+import al.shkurti.pullmenu.library.gesture.PullGestureEngine;
+
+/**
+ * A synthetic stream of touch events which mimics the pulls a user does on a feed screen. Each
+ * gesture is an ACTION_DOWN, a long run of ACTION_MOVE events delivered at the digitizer rate and
+ * an ACTION_UP, so the stream is dominated by MOVE events like the real per-frame path.
+ */
+final class TouchStream {
+
+    final int[] actions;
+    final float[] xs;
+    final float[] ys;
+    final long[] times;
+    final int size;
+
+    private TouchStream(int size) {
+        this.size = size;
+        actions = new int[size];
+        xs = new float[size];
+        ys = new float[size];
+        times = new long[size];
+    }
+
+    /**
+     * @param gestures number of pulls in the stream
+     * @param movesPerGesture number of ACTION_MOVE events in each pull
+     * @param sampleRateHz rate at which the digitizer delivers events, for example 120 or 240
+     * @param pullDistance distance in pixels which each pull travels
+     */
+    static TouchStream pulls(int gestures, int movesPerGesture, int sampleRateHz,
+            float pullDistance) {
+        final TouchStream stream = new TouchStream(gestures * (movesPerGesture + 2));
+        // Keep the clock in floating point, 240 Hz is not a whole number of milliseconds
+        final double frameMs = 1000.0 / sampleRateHz;
+
+        double time = 0;
+        int i = 0;
+        for (int g = 0; g < gestures; g++) {
+            final float startX = 200f + (g % 7) * 10f;
+            final float startY = 100f + (g % 5) * 20f;
+            // Vary how far each pull goes so that every menu item gets selected
+            final float distance = pullDistance * (0.4f + 0.6f * ((g % 10) / 9f));
+
+            stream.set(i++, PullGestureEngine.ACTION_DOWN, startX, startY, time);
+            for (int m = 1; m <= movesPerGesture; m++) {
+                time += frameMs;
+                final float t = m / (float) movesPerGesture;
+                // Ease out, the finger slows down towards the end of the pull
+                final float y = startY + distance * (1f - (1f - t) * (1f - t));
+                final float x = startX + ((m & 1) == 0 ? 0.5f : -0.5f);
+                stream.set(i++, PullGestureEngine.ACTION_MOVE, x, y, time);
+            }
+            time += frameMs;
+            stream.set(i++, PullGestureEngine.ACTION_UP, stream.xs[i - 2], stream.ys[i - 2], time);
+            time += 300;
+        }
+        return stream;
+    }
+
+    private void set(int i, int action, float x, float y, double time) {
+        actions[i] = action;
+        xs[i] = x;
+        ys[i] = y;
+        // Event times are whole milliseconds, like MotionEvent.getEventTime()
+        times[i] = (long) time;
+    }
+}
@@ -0,0 +1,155 @@
+package al.shkurti.pullmenu.library.gesture;
+
+import static al.shkurti.pullmenu.library.gesture.MenuPositionMapper.MENU_INDICATOR_MIN_VALUE;
+import static al.shkurti.pullmenu.library.gesture.MenuPositionMapper.NO_POSITION;
+import static al.shkurti.pullmenu.library.gesture.MenuPositionMapper.TABLE_SIZE;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public class MenuPositionMapperTest {
+
+    private static byte[] table(int itemCount, float[] weights) {
+        final byte[] table = new byte[TABLE_SIZE];
+        MenuPositionMapper.fillTable(table, itemCount, weights);
+        return table;
+    }
+
+    private static int count(byte[] table, int position) {
+        int count = 0;
+        for (byte value : table) {
+            if (value == position) count++;
+        }
+        return count;
+    }
+
+    @Test
+    public void defaultTableMatchesTheLegacyZones() {
+        for (int itemCount = 2; itemCount <= 6; itemCount++) {
+            final byte[] table = table(itemCount, null);
+            for (int p = 0; p < TABLE_SIZE; p++) {
+                assertEquals("items " + itemCount + " at " + p,
+                        MenuPositionMapper.getPosition(itemCount, p),
+                        MenuPositionMapper.lookup(table, p));
+            }
+        }
+    }
+
+    @Test
+    public void nothingIsSelectedOutsideTheSelectablePercentages() {
+        final byte[] table = table(4, null);
+        for (int p = 0; p <= MENU_INDICATOR_MIN_VALUE; p++) {
+            assertEquals(NO_POSITION, MenuPositionMapper.lookup(table, p));
+        }
+        assertEquals(NO_POSITION, MenuPositionMapper.lookup(table, 100));
+        assertEquals(NO_POSITION, MenuPositionMapper.lookup(table, -1));
+        assertEquals(NO_POSITION, MenuPositionMapper.lookup(table, TABLE_SIZE));
+    }
+
+    @Test
+    public void singleItemIsSelectedOverTheWholePull() {
+        final byte[] table = table(1, null);
+        for (int p = MENU_INDICATOR_MIN_VALUE + 1; p < 100; p++) {
+            assertEquals(0, MenuPositionMapper.lookup(table, p));
+        }
+    }
+
+    @Test
+    public void noItemsSelectNothing() {
+        assertEquals(TABLE_SIZE, count(table(0, null), NO_POSITION));
+    }
+
+    @Test
+    public void moreThanSixItemsAreSplitEvenly() {
+        final int itemCount = 10;
+        final byte[] table = table(itemCount, null);
+        assertEquals(0, MenuPositionMapper.lookup(table, MENU_INDICATOR_MIN_VALUE + 1));
+        assertEquals(itemCount - 1, MenuPositionMapper.lookup(table, 99));
+
+        int previous = 0;
+        for (int p = MENU_INDICATOR_MIN_VALUE + 1; p < 100; p++) {
+            final int position = MenuPositionMapper.lookup(table, p);
+            assertTrue(position == previous || position == previous + 1);
+            previous = position;
+        }
+        for (int i = 0; i < itemCount; i++) {
+            final int size = count(table, i);
+            assertTrue("zone " + i + " has " + size, size == 9 || size == 10);
+        }
+    }
+
+    @Test
+    public void weightsSizeTheZones() {
+        final byte[] table = table(2, new float[] {3f, 1f});
+        // 93 selectable percentages, the first item gets three quarters of the range
+        assertEquals(70, count(table, 0));
+        assertEquals(23, count(table, 1));
+        assertEquals(0, MenuPositionMapper.lookup(table, 76));
+        assertEquals(1, MenuPositionMapper.lookup(table, 77));
+    }
+
+    @Test
+    public void equalWeightsGiveEqualZones() {
+        final byte[] table = table(3, new float[] {1f, 1f, 1f});
+        for (int i = 0; i < 3; i++) {
+            final int size = count(table, i);
+            assertTrue("zone " + i + " has " + size, size == 31 || size == 32);
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void weightsMustBePositive() {
+        table(2, new float[] {1f, 0f});
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void weightsMustCoverEveryItem() {
+        table(3, new float[] {1f, 1f});
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void tableMustHaveAnEntryPerPercentage() {
+        MenuPositionMapper.fillTable(new byte[TABLE_SIZE - 1], 2, null);
+    }
+
+    @Test
+    public void zoneCentresAreTheMiddleOfEachZone() {
+        final byte[] table = table(2, null);
+        final float[] centres = new float[2];
+        MenuPositionMapper.fillZoneCentres(table, 2, centres);
+        // Item 0 covers 7..49 and item 1 covers 50..99
+        assertEquals(28f, centres[0], 0);
+        assertEquals(74.5f, centres[1], 0);
+    }
+
+    @Test
+    public void itemsWithoutAZoneShareTheLastCentre() {
+        final int itemCount = MenuPositionMapper.MAX_ITEM_COUNT;
+        final byte[] table = table(itemCount, null);
+        final float[] centres = new float[itemCount];
+        MenuPositionMapper.fillZoneCentres(table, itemCount, centres);
+        for (int i = 1; i < itemCount; i++) {
+            assertTrue(centres[i] >= centres[i - 1]);
+        }
+        assertTrue(centres[itemCount - 1] < 100f);
+    }
+
+    @Test
+    public void fractionalPositionInterpolatesBetweenCentres() {
+        final float[] centres = {28f, 74.5f};
+        assertEquals(0f, MenuPositionMapper.getFractionalPosition(centres, 2, 10f), 0);
+        assertEquals(0f, MenuPositionMapper.getFractionalPosition(centres, 2, 28f), 0);
+        assertEquals(0.5f, MenuPositionMapper.getFractionalPosition(centres, 2, 51.25f), 1e-6);
+        assertEquals(1f, MenuPositionMapper.getFractionalPosition(centres, 2, 90f), 0);
+        assertEquals(NO_POSITION, MenuPositionMapper.getFractionalPosition(centres, 0, 50f), 0);
+    }
+
+    @Test
+    public void percentageFollowsTheAccelerateCurve() {
+        assertEquals(0, MenuPositionMapper.getPercentage(0f, 100));
+        assertEquals(25, MenuPositionMapper.getPercentage(0.5f, 100));
+        assertEquals(100, MenuPositionMapper.getPercentage(1f, 100));
+        assertEquals(56.25f, MenuPositionMapper.getExactPercentage(0.75f, 100), 1e-4);
+    }
+}
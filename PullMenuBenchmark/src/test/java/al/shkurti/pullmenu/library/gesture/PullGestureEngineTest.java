@@ -0,0 +1,212 @@
+package al.shkurti.pullmenu.library.gesture;
+
+import static al.shkurti.pullmenu.library.gesture.PullGestureEngine.ACTION_CANCEL;
+import static al.shkurti.pullmenu.library.gesture.PullGestureEngine.ACTION_DOWN;
+import static al.shkurti.pullmenu.library.gesture.PullGestureEngine.ACTION_MOVE;
+import static al.shkurti.pullmenu.library.gesture.PullGestureEngine.ACTION_UP;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public class PullGestureEngineTest {
+
+    private static final float TOUCH_SLOP = 10f;
+    private static final float REFRESH_DISTANCE = 100f;
+    private static final float START_X = 50f, START_Y = 100f;
+
+    private long mTime;
+
+    private PullGestureEngine createEngine(boolean refreshOnUp) {
+        final PullGestureEngine engine = new PullGestureEngine(TOUCH_SLOP, refreshOnUp);
+        engine.setScrollNeededForRefresh(REFRESH_DISTANCE);
+        engine.setMenuItemCount(4);
+        return engine;
+    }
+
+    private int intercept(PullGestureEngine engine, int action, float x, float y, boolean ready) {
+        mTime += 8;
+        return engine.onInterceptTouchEvent(action, x, y, mTime, ready);
+    }
+
+    private int touch(PullGestureEngine engine, int action, float y) {
+        mTime += 8;
+        return engine.onTouchEvent(action, START_X, y, mTime);
+    }
+
+    /**
+     * @return the y the pull started at.
+     */
+    private float startPull(PullGestureEngine engine) {
+        intercept(engine, ACTION_DOWN, START_X, START_Y, true);
+        final float y = START_Y + TOUCH_SLOP + 1f;
+        assertEquals(PullGestureEngine.RESULT_PULL_STARTED,
+                intercept(engine, ACTION_MOVE, START_X, y, false));
+        return y;
+    }
+
+    @Test
+    public void startsIdle() {
+        final PullGestureEngine engine = createEngine(false);
+        assertEquals(PullGestureEngine.STATE_IDLE, engine.getState());
+        assertFalse(engine.isBeingDragged());
+        assertEquals(MenuPositionMapper.NO_POSITION, engine.getSelectedMenuIndex());
+    }
+
+    @Test
+    public void downOnReadyViewArms() {
+        final PullGestureEngine engine = createEngine(false);
+        assertEquals(PullGestureEngine.RESULT_NONE,
+                intercept(engine, ACTION_DOWN, START_X, START_Y, true));
+        assertEquals(PullGestureEngine.STATE_ARMED, engine.getState());
+    }
+
+    @Test
+    public void downOnViewWhichIsNotReadyDoesNotArm() {
+        final PullGestureEngine engine = createEngine(false);
+        intercept(engine, ACTION_DOWN, START_X, START_Y, false);
+        assertEquals(PullGestureEngine.STATE_IDLE, engine.getState());
+        assertEquals(PullGestureEngine.RESULT_NONE,
+                intercept(engine, ACTION_MOVE, START_X, START_Y + 50f, false));
+        assertFalse(engine.isBeingDragged());
+    }
+
+    @Test
+    public void pullOnlyStartsPastTheTouchSlop() {
+        final PullGestureEngine engine = createEngine(false);
+        intercept(engine, ACTION_DOWN, START_X, START_Y, true);
+        assertEquals(PullGestureEngine.RESULT_NONE,
+                intercept(engine, ACTION_MOVE, START_X, START_Y + TOUCH_SLOP, false));
+        assertEquals(PullGestureEngine.STATE_ARMED, engine.getState());
+
+        assertEquals(PullGestureEngine.RESULT_PULL_STARTED,
+                intercept(engine, ACTION_MOVE, START_X, START_Y + TOUCH_SLOP + 1f, false));
+        assertEquals(PullGestureEngine.STATE_DRAGGING, engine.getState());
+        assertTrue(engine.isBeingDragged());
+    }
+
+    @Test
+    public void horizontalMoveDoesNotStartPull() {
+        final PullGestureEngine engine = createEngine(false);
+        intercept(engine, ACTION_DOWN, START_X, START_Y, true);
+        assertEquals(PullGestureEngine.RESULT_NONE,
+                intercept(engine, ACTION_MOVE, START_X + 30f, START_Y + 15f, false));
+        assertFalse(engine.isBeingDragged());
+    }
+
+    @Test
+    public void upwardMovePastTheSlopDisarms() {
+        final PullGestureEngine engine = createEngine(false);
+        intercept(engine, ACTION_DOWN, START_X, START_Y, true);
+        intercept(engine, ACTION_MOVE, START_X, START_Y - TOUCH_SLOP - 1f, false);
+        assertEquals(PullGestureEngine.STATE_IDLE, engine.getState());
+    }
+
+    @Test
+    public void interceptedCancelAndUpDisarm() {
+        final PullGestureEngine engine = createEngine(false);
+        intercept(engine, ACTION_DOWN, START_X, START_Y, true);
+        intercept(engine, ACTION_CANCEL, START_X, START_Y, false);
+        assertEquals(PullGestureEngine.STATE_IDLE, engine.getState());
+
+        intercept(engine, ACTION_DOWN, START_X, START_Y, true);
+        intercept(engine, ACTION_UP, START_X, START_Y, false);
+        assertEquals(PullGestureEngine.STATE_IDLE, engine.getState());
+    }
+
+    @Test
+    public void pullReportsFractionAndMenuIndex() {
+        final PullGestureEngine engine = createEngine(false);
+        final float begin = startPull(engine);
+
+        assertEquals(PullGestureEngine.RESULT_PULLED, touch(engine, ACTION_MOVE, begin + 50f));
+        assertEquals(0.5f, engine.getPullFraction(), 1e-6);
+        assertEquals(MenuPositionMapper.getPercentage(0.5f, 100), engine.getPullPercentage());
+        assertEquals(MenuPositionMapper.getPosition(4, engine.getPullPercentage()),
+                engine.getSelectedMenuIndex());
+
+        assertEquals(PullGestureEngine.RESULT_PULLED, touch(engine, ACTION_MOVE, begin + 90f));
+        assertEquals(3, engine.getSelectedMenuIndex());
+    }
+
+    @Test
+    public void moveToSameOrAboveStartIsIgnored() {
+        final PullGestureEngine engine = createEngine(false);
+        final float begin = startPull(engine);
+        touch(engine, ACTION_MOVE, begin + 50f);
+        assertEquals(PullGestureEngine.RESULT_NONE, touch(engine, ACTION_MOVE, begin + 50f));
+        assertEquals(PullGestureEngine.RESULT_NONE, touch(engine, ACTION_MOVE, START_Y - 1f));
+        assertEquals(0.5f, engine.getPullFraction(), 1e-6);
+    }
+
+    @Test
+    public void pullPastRefreshDistanceRefreshes() {
+        final PullGestureEngine engine = createEngine(false);
+        final float begin = startPull(engine);
+        assertEquals(PullGestureEngine.RESULT_REFRESH,
+                touch(engine, ACTION_MOVE, begin + REFRESH_DISTANCE));
+    }
+
+    @Test
+    public void pullPastRefreshDistanceWithRefreshOnUpWaitsForRelease() {
+        final PullGestureEngine engine = createEngine(true);
+        final float begin = startPull(engine);
+        assertEquals(PullGestureEngine.RESULT_RELEASE_TO_REFRESH,
+                touch(engine, ACTION_MOVE, begin + REFRESH_DISTANCE + 5f));
+        // The release is compared against the last motion, which is past the refresh distance
+        assertEquals(PullGestureEngine.RESULT_RELEASED_REFRESH,
+                touch(engine, ACTION_UP, begin + REFRESH_DISTANCE + 5f));
+    }
+
+    @Test
+    public void releaseBeforeRefreshDistanceWithRefreshOnUpDoesNotRefresh() {
+        final PullGestureEngine engine = createEngine(true);
+        final float begin = startPull(engine);
+        touch(engine, ACTION_MOVE, begin + REFRESH_DISTANCE - 5f);
+        assertEquals(PullGestureEngine.RESULT_RELEASED,
+                touch(engine, ACTION_UP, begin + REFRESH_DISTANCE - 5f));
+    }
+
+    @Test
+    public void releaseUsesLastMotionNotTheUpPosition() {
+        final PullGestureEngine engine = createEngine(true);
+        final float begin = startPull(engine);
+        touch(engine, ACTION_MOVE, begin + 20f);
+        // The y of the ACTION_UP itself does not count as a pull
+        assertEquals(PullGestureEngine.RESULT_RELEASED,
+                touch(engine, ACTION_UP, begin + REFRESH_DISTANCE * 2f));
+    }
+
+    @Test
+    public void cancelWhileDraggingReleases() {
+        final PullGestureEngine engine = createEngine(false);
+        final float begin = startPull(engine);
+        touch(engine, ACTION_MOVE, begin + 30f);
+        assertEquals(PullGestureEngine.RESULT_RELEASED, touch(engine, ACTION_CANCEL, begin + 30f));
+
+        engine.reset();
+        assertEquals(PullGestureEngine.STATE_IDLE, engine.getState());
+        assertEquals(0f, engine.getPullFraction(), 0);
+        assertEquals(MenuPositionMapper.NO_POSITION, engine.getSelectedMenuIndex());
+    }
+
+    @Test
+    public void touchEventsWithoutPullAreIgnored() {
+        final PullGestureEngine engine = createEngine(false);
+        assertEquals(PullGestureEngine.RESULT_NONE, touch(engine, ACTION_MOVE, START_Y + 50f));
+        assertEquals(PullGestureEngine.RESULT_NONE, touch(engine, ACTION_UP, START_Y + 50f));
+    }
+
+    @Test
+    public void nestedPullStartsOnFirstDeltaAndReleasesOnStop() {
+        final PullGestureEngine engine = createEngine(false);
+        engine.startNestedPull(mTime);
+        assertEquals(PullGestureEngine.STATE_ARMED, engine.getState());
+        assertEquals(PullGestureEngine.RESULT_PULL_STARTED, engine.onNestedScroll(5f, mTime += 8));
+        assertEquals(PullGestureEngine.RESULT_PULLED, engine.onNestedScroll(45f, mTime += 8));
+        assertEquals(0.5f, engine.getPullFraction(), 1e-6);
+        assertEquals(PullGestureEngine.RESULT_RELEASED, engine.stopNestedPull(mTime += 8));
+        assertFalse(engine.isNestedPull());
+    }
+}
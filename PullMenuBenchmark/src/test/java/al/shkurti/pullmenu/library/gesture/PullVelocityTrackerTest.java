@@ -0,0 +1,83 @@
+package al.shkurti.pullmenu.library.gesture;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+public class PullVelocityTrackerTest {
+
+    @Test
+    public void emptyTrackerHasNoEstimate() {
+        final PullVelocityTracker tracker = new PullVelocityTracker();
+        assertEquals(0f, tracker.getVelocity(), 0);
+        assertEquals(0f, tracker.getAcceleration(), 0);
+        assertEquals(-1, tracker.getLatestTime());
+    }
+
+    @Test
+    public void quadraticFitRecoversVelocityAndAcceleration() {
+        final PullVelocityTracker tracker = new PullVelocityTracker();
+        // y = 100 + 500 t + 1000 t^2, so v = 500 + 2000 t and a = 2000
+        for (int ms = 0; ms <= 80; ms += 10) {
+            final double t = ms / 1000.0;
+            tracker.addSample((float) (100 + 500 * t + 1000 * t * t), ms);
+        }
+        assertEquals(500 + 2000 * 0.08, tracker.getVelocity(), 0.5);
+        assertEquals(2000, tracker.getAcceleration(), 5);
+        assertEquals(80, tracker.getLatestTime());
+    }
+
+    @Test
+    public void twoSamplesFitALine() {
+        final PullVelocityTracker tracker = new PullVelocityTracker();
+        tracker.addSample(0f, 0);
+        tracker.addSample(10f, 10);
+        assertEquals(1000f, tracker.getVelocity(), 1e-3);
+        assertEquals(0f, tracker.getAcceleration(), 0);
+    }
+
+    @Test
+    public void samplesOlderThanTheHorizonAreIgnored() {
+        final PullVelocityTracker tracker = new PullVelocityTracker();
+        // Far off samples which would ruin the fit if they were used
+        tracker.addSample(5000f, 0);
+        tracker.addSample(-5000f, 50);
+        // A constant 10000 px/s, the oldest of these is exactly 100 ms old
+        for (int ms = 200; ms <= 300; ms += 20) {
+            tracker.addSample(ms * 10f, ms);
+        }
+        assertEquals(10000f, tracker.getVelocity(), 1);
+        assertEquals(0f, tracker.getAcceleration(), 1);
+    }
+
+    @Test
+    public void ringBufferKeepsTheNewestSamples() {
+        final PullVelocityTracker tracker = new PullVelocityTracker();
+        // More samples than the buffer holds, all within the horizon
+        for (int ms = 0; ms <= 60; ms += 4) {
+            tracker.addSample(ms * 2f, ms);
+        }
+        assertEquals(2000f, tracker.getVelocity(), 1);
+    }
+
+    @Test
+    public void outOfOrderSampleStartsAgain() {
+        final PullVelocityTracker tracker = new PullVelocityTracker();
+        tracker.addSample(0f, 100);
+        tracker.addSample(50f, 110);
+        tracker.addSample(20f, 50);
+        assertEquals(0f, tracker.getVelocity(), 0);
+        assertEquals(50, tracker.getLatestTime());
+        assertEquals(20f, tracker.getLatestY(), 0);
+    }
+
+    @Test
+    public void clearDropsTheSamples() {
+        final PullVelocityTracker tracker = new PullVelocityTracker();
+        tracker.addSample(0f, 0);
+        tracker.addSample(10f, 10);
+        tracker.clear();
+        assertEquals(0f, tracker.getVelocity(), 0);
+        assertEquals(-1, tracker.getLatestTime());
+    }
+}
@@ -0,0 +1,33 @@
+package al.shkurti.pullmenu.library;
+
+import android.app.Activity;
+import android.os.Bundle;
+import android.view.View;
+import android.view.ViewGroup;
+
+/**
+ * An activity with a {@link PullMenuLayout} which is filled by one pullable view.
+ */
+public class PullMenuTestActivity extends Activity {
+
+    private PullMenuLayout mPullMenuLayout;
+    private View mContentView;
+
+    @Override
+    protected void onCreate(Bundle savedInstanceState) {
+        super.onCreate(savedInstanceState);
+        mPullMenuLayout = new PullMenuLayout(this);
+        mContentView = new View(this);
+        mPullMenuLayout.addView(mContentView, new ViewGroup.LayoutParams(
+                ViewGroup.LayoutParams.MATCH_PARENT, ViewGroup.LayoutParams.MATCH_PARENT));
+        setContentView(mPullMenuLayout);
+    }
+
+    PullMenuLayout getPullMenuLayout() {
+        return mPullMenuLayout;
+    }
+
+    View getContentView() {
+        return mContentView;
+    }
+}
@@ -0,0 +1,202 @@
+package al.shkurti.pullmenu.library;
+
+import java.util.ArrayList;
+
+import al.shkurti.pullmenu.library.listeners.OnRefreshListener;
+import al.shkurti.pullmenu.library.viewdelegates.ViewDelegate;
+import android.graphics.Color;
+import android.os.Debug;
+import android.os.SystemClock;
+import android.test.ActivityInstrumentationTestCase2;
+import android.view.MotionEvent;
+import android.view.View;
+
+/**
+ * Replays 10k touch events, in gestures of an ACTION_DOWN, pulls down and back up with batched
+ * samples and an ACTION_UP, through the dispatch of a {@link PullMenuLayout} and checks that the
+ * attacher and its gesture engine do not allocate while handling them.
+ */
+public class PullMenuTouchDispatchTest
+        extends ActivityInstrumentationTestCase2<PullMenuTestActivity> {
+
+    private static final int EVENTS = 10000;
+    private static final int EVENTS_PER_GESTURE = 100;
+    private static final int HISTORY_SIZE = 2;
+    private static final long FRAME_MS = 16;
+    // How far each gesture pulls, as a fraction of the refresh distance. The pull goes back up
+    // before the touch ends, so that no menu item is selected and no refresh starts
+    private static final float MAX_PULL_FRACTION = 0.7f;
+    private static final float REFRESH_SCROLL_DISTANCE = 0.5f;
+
+    private PullMenuLayout mLayout;
+    private CountingHeaderTransformer mTransformer;
+    private MotionEvent[] mEvents;
+
+    private int mAllocations;
+    private int mRefreshes;
+
+    /**
+     * Only counts the pulls, so that the header's animations and drawing are left out.
+     */
+    private static class CountingHeaderTransformer extends HeaderTransformer {
+        int mPulls;
+        int mMaxProgress;
+
+        @Override
+        public void onPulled(PullState pullState, float percentagePulled, float velocityY,
+                float accelerationY) {
+            super.onPulled(pullState, percentagePulled, velocityY, accelerationY);
+            mPulls++;
+            mMaxProgress = Math.max(mMaxProgress, pullState.getProgress());
+        }
+
+        @Override
+        public boolean showHeaderView() {
+            return false;
+        }
+
+        @Override
+        public boolean hideHeaderView() {
+            return false;
+        }
+    }
+
+    public PullMenuTouchDispatchTest() {
+        super(PullMenuTestActivity.class);
+    }
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        final PullMenuTestActivity activity = getActivity();
+        mTransformer = new CountingHeaderTransformer();
+
+        getInstrumentation().runOnMainSync(new Runnable() {
+            @Override
+            public void run() {
+                final ArrayList<String> items = new ArrayList<String>();
+                items.add("Top Stories");
+                items.add("Most Recent");
+                items.add("Refresh");
+
+                mLayout = activity.getPullMenuLayout();
+                ActionBarPullMenu.from(activity)
+                        .options(new Options.Builder()
+                                .headerTransformer(mTransformer)
+                                .scrollDistance(REFRESH_SCROLL_DISTANCE)
+                                .build())
+                        .allChildrenArePullable()
+                        .useViewDelegate(View.class, new ViewDelegate() {
+                            @Override
+                            public boolean isReadyForPull(View view, float x, float y) {
+                                return true;
+                            }
+                        })
+                        .listener(new OnRefreshListener() {
+                            @Override
+                            public void onRefreshStarted(View view, int position, String field) {
+                                mRefreshes++;
+                            }
+                        })
+                        .setup(mLayout, android.R.color.white, Color.BLACK, Color.BLUE, items);
+            }
+        });
+        getInstrumentation().waitForIdleSync();
+
+        getInstrumentation().runOnMainSync(new Runnable() {
+            @Override
+            public void run() {
+                mEvents = createGestures(activity.getContentView());
+            }
+        });
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        if (mEvents != null) {
+            for (MotionEvent event : mEvents) {
+                event.recycle();
+            }
+        }
+        super.tearDown();
+    }
+
+    /**
+     * @return the events of {@link #EVENTS} / {@link #EVENTS_PER_GESTURE} gestures on
+     *         {@code view}, with screen co-ordinates.
+     */
+    private static MotionEvent[] createGestures(View view) {
+        final int[] location = new int[2];
+        view.getLocationOnScreen(location);
+        final float x = location[0] + view.getWidth() / 2f;
+        final float startY = location[1] + 10f;
+        final float maxPull = view.getHeight() * REFRESH_SCROLL_DISTANCE * MAX_PULL_FRACTION;
+        final int moves = EVENTS_PER_GESTURE - 2;
+
+        final MotionEvent[] events = new MotionEvent[EVENTS];
+        long time = SystemClock.uptimeMillis();
+        int e = 0;
+        while (e < EVENTS) {
+            final long downTime = time;
+            events[e++] = MotionEvent.obtain(downTime, time, MotionEvent.ACTION_DOWN, x, startY, 0);
+
+            float lastY = startY;
+            for (int m = 1; m <= moves; m++) {
+                // Down to the deepest pull in the first half, back up in the second
+                final float progress = m <= moves / 2
+                        ? (float) m / (moves / 2)
+                        : (float) (moves - m) / (moves / 2);
+                final float y = startY + maxPull * progress;
+
+                // The samples between the frames become the historical samples of the move
+                final long frameStart = time;
+                time += FRAME_MS;
+                final float step = (y - lastY) / (HISTORY_SIZE + 1);
+                final MotionEvent move = MotionEvent.obtain(downTime,
+                        frameStart + FRAME_MS / (HISTORY_SIZE + 1), MotionEvent.ACTION_MOVE, x,
+                        lastY + step, 0);
+                for (int h = 2; h <= HISTORY_SIZE; h++) {
+                    move.addBatch(frameStart + FRAME_MS * h / (HISTORY_SIZE + 1), x,
+                            lastY + step * h, 1f, 1f, 0);
+                }
+                move.addBatch(time, x, y, 1f, 1f, 0);
+                events[e++] = move;
+                lastY = y;
+            }
+
+            time += FRAME_MS;
+            events[e++] = MotionEvent.obtain(downTime, time, MotionEvent.ACTION_UP, x, startY, 0);
+            time += FRAME_MS;
+        }
+        return events;
+    }
+
+    @SuppressWarnings("deprecation")
+    public void testTouchDispatchDoesNotAllocate() {
+        getInstrumentation().runOnMainSync(new Runnable() {
+            @Override
+            public void run() {
+                // Replay the first gesture once, so that anything created lazily is in place
+                for (int i = 0; i < EVENTS_PER_GESTURE; i++) {
+                    mLayout.dispatchTouchEvent(mEvents[i]);
+                }
+                mTransformer.mPulls = 0;
+
+                Debug.resetThreadAllocCount();
+                Debug.startAllocCounting();
+                for (int i = 0; i < EVENTS; i++) {
+                    mLayout.dispatchTouchEvent(mEvents[i]);
+                }
+                Debug.stopAllocCounting();
+                mAllocations = Debug.getThreadAllocCount();
+            }
+        });
+
+        // Every gesture pulled into the menu and back out of it
+        assertTrue(mTransformer.mPulls > EVENTS / 2);
+        assertTrue(mTransformer.mMaxProgress > 0);
+        assertEquals(0, mRefreshes);
+        assertFalse(mLayout.isRefreshing());
+        assertEquals(0, mAllocations);
+    }
+}
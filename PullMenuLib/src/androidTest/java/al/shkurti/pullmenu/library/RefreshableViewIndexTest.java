@@ -0,0 +1,163 @@
+package al.shkurti.pullmenu.library;
+
+import al.shkurti.pullmenu.library.viewdelegates.ViewDelegate;
+import android.content.Context;
+import android.graphics.PixelFormat;
+import android.os.Debug;
+import android.test.InstrumentationTestCase;
+import android.view.Gravity;
+import android.view.View;
+import android.view.WindowManager;
+import android.widget.FrameLayout;
+
+/**
+ * Replays ACTION_DOWN hit-tests through {@link RefreshableViewIndex} on a window with a few
+ * overlapping refreshable views and checks that the lookups do not allocate.
+ */
+public class RefreshableViewIndexTest extends InstrumentationTestCase {
+
+    private static final int EVENTS = 10000;
+    private static final int WIDTH = 400, HEIGHT = 800;
+
+    private WindowManager mWindowManager;
+    private FrameLayout mRoot;
+    private View mBackground, mTop, mBottom;
+    private RefreshableViewIndex mIndex;
+
+    private int mAllocations;
+    private int mFound;
+
+    /**
+     * Ready for a pull in the upper half of every view.
+     */
+    private static class UpperHalfDelegate implements ViewDelegate {
+        @Override
+        public boolean isReadyForPull(View view, float x, float y) {
+            return y < view.getHeight() / 2;
+        }
+    }
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        final Context context = getInstrumentation().getTargetContext();
+        mWindowManager = (WindowManager) context.getSystemService(Context.WINDOW_SERVICE);
+
+        getInstrumentation().runOnMainSync(new Runnable() {
+            @Override
+            public void run() {
+                mRoot = new FrameLayout(context);
+                mBackground = new View(context);
+                mRoot.addView(mBackground, new FrameLayout.LayoutParams(WIDTH, HEIGHT));
+                mTop = new View(context);
+                mRoot.addView(mTop, new FrameLayout.LayoutParams(WIDTH, HEIGHT / 2, Gravity.TOP));
+                mBottom = new View(context);
+                mRoot.addView(mBottom,
+                        new FrameLayout.LayoutParams(WIDTH, HEIGHT / 2, Gravity.BOTTOM));
+
+                final WindowManager.LayoutParams params = new WindowManager.LayoutParams(
+                        WIDTH, HEIGHT, WindowManager.LayoutParams.TYPE_TOAST,
+                        WindowManager.LayoutParams.FLAG_NOT_FOCUSABLE
+                                | WindowManager.LayoutParams.FLAG_NOT_TOUCHABLE,
+                        PixelFormat.TRANSLUCENT);
+                params.gravity = Gravity.TOP | Gravity.LEFT;
+                mWindowManager.addView(mRoot, params);
+
+                mIndex = new RefreshableViewIndex();
+                mIndex.attach(mRoot);
+                final ViewDelegate delegate = new UpperHalfDelegate();
+                mIndex.put(mBackground, delegate);
+                mIndex.put(mTop, delegate);
+                mIndex.put(mBottom, delegate);
+            }
+        });
+        getInstrumentation().waitForIdleSync();
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        getInstrumentation().runOnMainSync(new Runnable() {
+            @Override
+            public void run() {
+                mIndex.detach();
+                mIndex.clear();
+                mWindowManager.removeView(mRoot);
+            }
+        });
+        super.tearDown();
+    }
+
+    public void testLastRegisteredReadyViewWins() {
+        getInstrumentation().runOnMainSync(new Runnable() {
+            @Override
+            public void run() {
+                final int[] location = new int[2];
+                mRoot.getLocationOnScreen(location);
+                final int x = location[0] + WIDTH / 2, y = location[1];
+
+                // The top view is registered after the background which it overlaps
+                assertSame(mTop, mIndex.findViewReadyForPull(x, y + 10));
+                // The top view is not ready in its lower half, but the background is
+                assertSame(mBackground, mIndex.findViewReadyForPull(x, y + HEIGHT / 2 - 10));
+                assertSame(mBottom, mIndex.findViewReadyForPull(x, y + HEIGHT / 2 + 10));
+                assertNull(mIndex.findViewReadyForPull(x, y + HEIGHT - 10));
+                assertNull(mIndex.findViewReadyForPull(x, y - 10));
+            }
+        });
+    }
+
+    public void testTranslatedViewIsFound() {
+        getInstrumentation().runOnMainSync(new Runnable() {
+            @Override
+            public void run() {
+                final int[] location = new int[2];
+                mRoot.getLocationOnScreen(location);
+                final int x = location[0] + WIDTH / 2, y = location[1] + HEIGHT - 10;
+                assertNull(mIndex.findViewReadyForPull(x, y));
+
+                // Moves the upper half of the bottom view under the point, without a layout pass
+                mBottom.setTranslationY(HEIGHT / 4);
+                mIndex.invalidate();
+                assertSame(mBottom, mIndex.findViewReadyForPull(x, y));
+            }
+        });
+    }
+
+    @SuppressWarnings("deprecation")
+    public void testHitTestsDoNotAllocate() {
+        getInstrumentation().runOnMainSync(new Runnable() {
+            @Override
+            public void run() {
+                final int[] location = new int[2];
+                mRoot.getLocationOnScreen(location);
+                final int left = location[0], top = location[1];
+
+                // Warm up, so that any lazily grown array is already in place
+                for (int i = 0; i < 100; i++) {
+                    mIndex.findViewReadyForPull(left + i % WIDTH, top + (i * 7) % HEIGHT);
+                }
+
+                Debug.resetThreadAllocCount();
+                Debug.startAllocCounting();
+                int found = 0;
+                for (int i = 0; i < EVENTS; i++) {
+                    if ((i & 15) == 0) {
+                        // Scrolls between the gestures mark the index as possibly moved
+                        mIndex.onScrollChanged();
+                    }
+                    final int x = left + (i * 13) % WIDTH;
+                    final int y = top - 20 + (i * 31) % (HEIGHT + 40);
+                    if (mIndex.findViewReadyForPull(x, y) != null) {
+                        found++;
+                    }
+                }
+                Debug.stopAllocCounting();
+                mAllocations = Debug.getThreadAllocCount();
+                mFound = found;
+            }
+        });
+
+        assertTrue(mFound > 0);
+        assertEquals(0, mAllocations);
+    }
+}
@@ -0,0 +1,85 @@
+package al.shkurti.pullmenu.library.slidingtabstrip;
+
+import java.util.ArrayList;
+
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.os.Debug;
+import android.test.AndroidTestCase;
+import android.view.View;
+
+/**
+ * Checks that drawing the strip, which runs on every frame of a pull, does not allocate.
+ */
+public class MenuSlidingTabStripTest extends AndroidTestCase {
+
+    private static final int DRAWS = 1000;
+    private static final int WIDTH = 480, HEIGHT = 96;
+
+    private MenuSlidingTabStrip mStrip;
+    private Bitmap mBitmap;
+    private Canvas mCanvas;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        mStrip = new MenuSlidingTabStrip(getContext());
+        final ArrayList<String> items = new ArrayList<String>();
+        items.add("Top Stories");
+        items.add("Most Recent");
+        items.add("Interest");
+        items.add("Refresh");
+        mStrip.setArray(items);
+        mStrip.setDividerWidth(1);
+
+        mBitmap = Bitmap.createBitmap(WIDTH, HEIGHT, Bitmap.Config.ARGB_8888);
+        mCanvas = new Canvas(mBitmap);
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        mBitmap.recycle();
+        super.tearDown();
+    }
+
+    private void layout() {
+        mStrip.measure(View.MeasureSpec.makeMeasureSpec(WIDTH, View.MeasureSpec.EXACTLY),
+                View.MeasureSpec.makeMeasureSpec(HEIGHT, View.MeasureSpec.EXACTLY));
+        mStrip.layout(0, 0, WIDTH, HEIGHT);
+    }
+
+    @SuppressWarnings("deprecation")
+    private int countDrawAllocations() {
+        // Draw once first, so that anything created lazily is already in place
+        mStrip.onDraw(mCanvas);
+
+        Debug.resetThreadAllocCount();
+        Debug.startAllocCounting();
+        for (int i = 0; i < DRAWS; i++) {
+            mStrip.onDraw(mCanvas);
+        }
+        Debug.stopAllocCounting();
+        return Debug.getThreadAllocCount();
+    }
+
+    public void testViewsModeDrawDoesNotAllocate() {
+        layout();
+        mStrip.changeMenuIndicatorPosition(60);
+        assertEquals(0, countDrawAllocations());
+    }
+
+    public void testCanvasModeDrawDoesNotAllocate() {
+        mStrip.setRenderMode(MenuSlidingTabStrip.RENDER_MODE_CANVAS);
+        layout();
+        mStrip.changeMenuIndicatorPosition(60);
+        assertEquals(0, countDrawAllocations());
+    }
+
+    public void testContinuousIndicatorDrawDoesNotAllocate() {
+        mStrip.setContinuousIndicator(true);
+        layout();
+        // The indicator sits between two tabs, so the coordinates are interpolated
+        mStrip.changeMenuIndicatorPosition(55.5f);
+        assertEquals(0, countDrawAllocations());
+    }
+}
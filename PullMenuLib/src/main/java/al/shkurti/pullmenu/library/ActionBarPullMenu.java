@@ -1,20 +1,34 @@
 package al.shkurti.pullmenu.library;
 
 
+import java.lang.ref.WeakReference;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.Set;
 
+import al.shkurti.pullmenu.library.listeners.HeaderViewListener;
 import al.shkurti.pullmenu.library.listeners.OnRefreshListener;
 import al.shkurti.pullmenu.library.viewdelegates.ViewDelegate;
 import android.app.Activity;
+import android.content.Context;
+import android.os.AsyncTask;
+import android.util.Log;
 import android.view.View;
 import android.view.ViewGroup;
 
 
 public class ActionBarPullMenu {
 
+    private static final String LOG_TAG = "ActionBarPullMenu";
+
+    /**
+     * Called on the main thread once {@link SetupWizard#setupAsync} has set up the layout.
+     */
+    public interface OnSetupCompleteListener {
+        public void onSetupComplete(PullMenuLayout pullMenuLayout);
+    }
+
     public static SetupWizard from(Activity activity) {
         return new SetupWizard(activity);
     }
@@ -80,9 +94,39 @@ public class ActionBarPullMenu {
          * @param menuIndicatorItems list of items that will be added to menu indicator
          * */
         public void setup(PullMenuLayout pullMenuLayout,int textColor, int backgroundColor, int progressBarColor, ArrayList<String> menuIndicatorItems) {
+            setup(pullMenuLayout, textColor, backgroundColor, progressBarColor, menuIndicatorItems, null);
+        }
+
+        /**
+         * Same as {@link #setup(PullMenuLayout, int, int, int, ArrayList)}, but the header and its
+         * menu indicator are inflated, and the menu titles measured, on a background thread. The
+         * layout is set up on the main thread afterwards, until then it does not react to pulls.
+         * <p/>
+         * If the header can not be inflated off the main thread it is inflated during the set up
+         * instead, as {@link #setup(PullMenuLayout, int, int, int, ArrayList)} does. The set up is
+         * cancelled if the layout is detached, or set up again, before the header is inflated.
+         * <p/>
+         * While the set up is pending, the refreshing state and header view listener set on the
+         * layout are applied once it has finished, {@link PullMenuLayout#getHeaderView()} returns
+         * null and {@link PullMenuLayout#getHeaderTransformer()} throws.
+         *
+         * @param listener called once the layout has been set up, can be null
+         * */
+        public void setupAsync(PullMenuLayout pullMenuLayout,int textColor, int backgroundColor, int progressBarColor, ArrayList<String> menuIndicatorItems,
+                OnSetupCompleteListener listener) {
+            final HeaderInflateTask task = new HeaderInflateTask(this, pullMenuLayout, textColor,
+                    backgroundColor, menuIndicatorItems);
+            // The layout holds the set up, so the task only needs a weak reference to the layout
+            pullMenuLayout.setPendingSetup(new PendingSetup(this, task, progressBarColor, listener));
+            task.executeOnExecutor(AsyncTask.THREAD_POOL_EXECUTOR);
+        }
+
+        private void setup(PullMenuLayout pullMenuLayout,int textColor, int backgroundColor, int progressBarColor, ArrayList<String> menuIndicatorItems,
+                View headerView) {
 
             PullMenuAttacher attacher = pullMenuLayout.createPullToRefreshAttacher(
-                    mActivity, mOptions, textColor, backgroundColor, progressBarColor, menuIndicatorItems);
+                    mActivity, mOptions, textColor, backgroundColor, progressBarColor, menuIndicatorItems,
+                    headerView);
 
             attacher.setOnRefreshListener(mOnRefreshListener);
 
@@ -125,4 +169,112 @@ public class ActionBarPullMenu {
                     ViewGroup.LayoutParams.MATCH_PARENT);
         }
     }
+
+    /**
+     * A set up started by {@link SetupWizard#setupAsync} which is waiting for its header.
+     */
+    static final class PendingSetup {
+        final SetupWizard mWizard;
+        final HeaderInflateTask mTask;
+        final int mProgressBarColor;
+        final OnSetupCompleteListener mListener;
+
+        // Calls made on the layout while the set up is pending, applied once it has finished
+        boolean mRefreshing;
+        HeaderViewListener mHeaderViewListener;
+
+        PendingSetup(SetupWizard wizard, HeaderInflateTask task, int progressBarColor,
+                OnSetupCompleteListener listener) {
+            mWizard = wizard;
+            mTask = task;
+            mProgressBarColor = progressBarColor;
+            mListener = listener;
+        }
+
+        void cancel() {
+            mTask.cancel(false);
+        }
+
+        void applyTo(PullMenuLayout pullMenuLayout) {
+            if (mHeaderViewListener != null) {
+                pullMenuLayout.setHeaderViewListener(mHeaderViewListener);
+            }
+            if (mRefreshing) {
+                pullMenuLayout.setRefreshing(true);
+            }
+        }
+    }
+
+    /**
+     * Inflates the header on a background thread. It only holds weak references to the layout and
+     * to the window, everything which the set up needs afterwards is held by the layout.
+     */
+    static final class HeaderInflateTask extends AsyncTask<Void, Void, View> {
+        private final WeakReference<PullMenuLayout> mPullMenuLayout;
+        private final int mTextColor, mBackgroundColor;
+        private final ArrayList<String> mItems;
+
+        private final Options mOptions;
+        private final WeakReference<Context> mInflaterContext;
+        private final WeakReference<ViewGroup> mDecorView;
+
+        HeaderInflateTask(SetupWizard wizard, PullMenuLayout pullMenuLayout, int textColor,
+                int backgroundColor, ArrayList<String> items) {
+            mPullMenuLayout = new WeakReference<PullMenuLayout>(pullMenuLayout);
+            mTextColor = textColor;
+            mBackgroundColor = backgroundColor;
+            mItems = items;
+
+            // The Action Bar and the Decor View can only be touched on the main thread
+            final Activity activity = wizard.mActivity;
+            mOptions = wizard.mOptions != null ? wizard.mOptions : new Options();
+            final EnvironmentDelegate environmentDelegate = mOptions.environmentDelegate != null
+                    ? mOptions.environmentDelegate
+                    : new PullMenuAttacher.DefaultEnvironmentDelegate();
+            mInflaterContext = new WeakReference<Context>(
+                    environmentDelegate.getContextForInflater(activity));
+            mDecorView = new WeakReference<ViewGroup>(
+                    (ViewGroup) activity.getWindow().getDecorView());
+        }
+
+        @Override
+        protected View doInBackground(Void... params) {
+            final Context context = mInflaterContext.get();
+            final ViewGroup decorView = mDecorView.get();
+            if (context == null || decorView == null || isCancelled()) {
+                return null;
+            }
+            try {
+                return PullMenuAttacher.inflateHeaderView(
+                        DeferredProgressBarFactory.createInflater(context), mOptions, decorView,
+                        mTextColor, mBackgroundColor, mItems);
+            } catch (RuntimeException e) {
+                // A view which needs a Looper, leave it to the main thread
+                Log.i(LOG_TAG, "Could not inflate the header off the main thread.", e);
+                return null;
+            }
+        }
+
+        @Override
+        protected void onPostExecute(View headerView) {
+            final PullMenuLayout pullMenuLayout = mPullMenuLayout.get();
+            if (pullMenuLayout == null) return;
+
+            // Null if the layout has been detached or set up again since
+            final PendingSetup pendingSetup = pullMenuLayout.takePendingSetup(this);
+            if (pendingSetup == null || pendingSetup.mWizard.mActivity.isFinishing()) return;
+
+            // The progress bars have to be created on the main thread
+            if (headerView != null && !DeferredProgressBarFactory.createProgressBars(headerView,
+                    mOptions.headerLayout)) {
+                headerView = null;
+            }
+            pendingSetup.mWizard.setup(pullMenuLayout, mTextColor, mBackgroundColor,
+                    pendingSetup.mProgressBarColor, mItems, headerView);
+            pendingSetup.applyTo(pullMenuLayout);
+            if (pendingSetup.mListener != null) {
+                pendingSetup.mListener.onSetupComplete(pullMenuLayout);
+            }
+        }
+    }
 }
@@ -5,7 +5,6 @@ import al.shkurti.pullmenu.R;
 import al.shkurti.pullmenu.library.sdk.Compat;
 import android.animation.Animator;
 import android.animation.AnimatorListenerAdapter;
-import android.animation.AnimatorSet;
 import android.animation.ObjectAnimator;
 import android.app.Activity;
 import android.content.Context;
@@ -13,20 +12,15 @@ import android.content.res.Configuration;
 import android.content.res.TypedArray;
 import android.graphics.Color;
 import android.graphics.PixelFormat;
-import android.graphics.drawable.ClipDrawable;
 import android.graphics.drawable.Drawable;
-import android.graphics.drawable.ShapeDrawable;
-import android.graphics.drawable.shapes.RectShape;
 import android.os.Build;
 import android.util.TypedValue;
-import android.view.Gravity;
 import android.view.View;
 import android.view.ViewGroup;
-import android.view.animation.AccelerateInterpolator;
-import android.view.animation.Interpolator;
 import android.widget.RelativeLayout;
 import android.widget.Toast;
 
+import al.shkurti.pullmenu.library.gesture.MenuPositionMapper;
 import al.shkurti.pullmenu.library.slidingtabstrip.MenuSlidingTabStrip;
 import fr.castorflex.android.smoothprogressbar.SmoothProgressBar;
 
@@ -37,7 +31,7 @@ public class DefaultHeaderTransformer extends HeaderTransformer {
 
     public static final int PROGRESS_BAR_STYLE_INSIDE = 0;
     public static final int PROGRESS_BAR_STYLE_OUTSIDE = 1;
-    public static final int MENU_INDICATOR_MIN_VALUE = 6;
+    public static final int MENU_INDICATOR_MIN_VALUE = MenuPositionMapper.MENU_INDICATOR_MIN_VALUE;
 
     private View mHeaderView;
     private ViewGroup mContentLayout;
@@ -47,12 +41,17 @@ public class DefaultHeaderTransformer extends HeaderTransformer {
     private int mProgressDrawableColor;
 
     private long mAnimationDuration;
+
+    // Built once per header and retargeted from the current values on each use
+    private ObjectAnimator mHeaderAlphaAnimator;
+    private ObjectAnimator mContentTranslationAnimator;
+    private ObjectAnimator mContentAlphaAnimator;
+    private final HideAnimationCallback mHideAnimationCallback = new HideAnimationCallback();
+    private boolean mHiding;
+    private boolean mLayerAnimations;
+
     private int mProgressBarStyle;
     private int mProgressBarHeight = RelativeLayout.LayoutParams.WRAP_CONTENT;
-    
-    public static int scrollPercantage=0;
-
-    private final Interpolator mInterpolator = new AccelerateInterpolator();
 
     protected DefaultHeaderTransformer() {
         final int min = getMinimumApiLevel();
@@ -73,6 +72,7 @@ public class DefaultHeaderTransformer extends HeaderTransformer {
         mContentLayout = (ViewGroup) headerView.findViewById(R.id.pm_content);
 
         mAnimationDuration = activity.getResources().getInteger(android.R.integer.config_shortAnimTime);
+        createAnimators();
 
       //  mProgressDrawableColor = activity.getResources().getColor(R.color.default_progress_bar_color);
 
@@ -80,9 +80,9 @@ public class DefaultHeaderTransformer extends HeaderTransformer {
         setupViewsFromStyles(activity, headerView);
 
         //applyProgressBarStyle();
-        setProgressBarColor(progresBarColor);
-
-        // Apply any custom ProgressBar colors and corner radius
+        // Apply the ProgressBar color even if the style already set it, and only once
+        mProgressDrawableColor = progresBarColor;
+        mHeaderProgressBar.setSmoothProgressDrawableColor(progresBarColor);
         applyProgressBarSettings();
 
         // FIXME: I do not like this call here
@@ -111,6 +111,12 @@ public class DefaultHeaderTransformer extends HeaderTransformer {
         }
 
         // Reset the Content Layout
+        if (mContentAlphaAnimator != null) {
+            mContentAlphaAnimator.cancel();
+        }
+        if (mContentLayout != null && useLayerAnimations()) {
+            mContentLayout.animate().cancel();
+        }
         if (mContentLayout != null) {
             mContentLayout.setVisibility(View.VISIBLE);
             Compat.setAlpha(mContentLayout, 1f);
@@ -121,11 +127,13 @@ public class DefaultHeaderTransformer extends HeaderTransformer {
     public void onPulled(float percentagePulled) {
         if (mHeaderProgressBar != null) {
             mHeaderProgressBar.setVisibility(View.VISIBLE);
-            final float progress = mInterpolator.getInterpolation(percentagePulled);
-            
-            mHeaderProgressBar.setProgress(Math.round(mHeaderProgressBar.getMax() * progress));
-            scrollPercantage = Math.round(mHeaderProgressBar.getMax() * progress);//mHeaderProgressBar.getMax() = 100
-            mSlidingTabStrip.changeMenuIndicatorPosition(scrollPercantage);
+            final float exactProgress = MenuPositionMapper.getExactPercentage(percentagePulled,
+                    mHeaderProgressBar.getMax());
+            final int progress = Math.round(exactProgress);
+
+            mHeaderProgressBar.setProgress(progress);
+            // The exact progress lets a continuous indicator move between the tabs
+            mSlidingTabStrip.changeMenuIndicatorPosition(exactProgress);
             
         }
     }
@@ -155,7 +163,13 @@ public class DefaultHeaderTransformer extends HeaderTransformer {
         // Here we fade out most of the header, leaving just the progress bar
         if (mContentLayout != null) {// this happens only when the boolean in Option class refreshMinimize is true
             // here is made invisible the menu sliding tab strip
-            ObjectAnimator.ofFloat(mContentLayout, "alpha", 1f, 0f).start();
+            if (useLayerAnimations()) {
+                Compat.startWithLayer(mContentLayout.animate().alpha(0f)
+                        .setDuration(mContentAlphaAnimator.getDuration()), null);
+            } else {
+                mContentAlphaAnimator.setFloatValues(mContentLayout.getAlpha(), 0f);
+                mContentAlphaAnimator.start();
+            }
         }
     }
     
@@ -173,17 +187,31 @@ public class DefaultHeaderTransformer extends HeaderTransformer {
 
     @Override
     public boolean showHeaderView() {
-        final boolean changeVis = mHeaderView.getVisibility() != View.VISIBLE;
+        // A header which is still being hidden is shown again from where it got to
+        final boolean wasHiding = mHiding;
+        final boolean changeVis = wasHiding || mHeaderView.getVisibility() != View.VISIBLE;
 
         if (changeVis) {
+            mHiding = false;
+            cancelAnimators();
+
             mHeaderView.setVisibility(View.VISIBLE);
-            AnimatorSet animSet = new AnimatorSet();
-            ObjectAnimator transAnim = ObjectAnimator.ofFloat(mContentLayout, "translationY",
-                    -mContentLayout.getHeight(), 0f);
-            ObjectAnimator alphaAnim = ObjectAnimator.ofFloat(mHeaderView, "alpha", 0f, 1f);
-            animSet.playTogether(transAnim, alphaAnim);
-            animSet.setDuration(mAnimationDuration);
-            animSet.start();
+            final float fromTranslation = wasHiding
+                    ? mContentLayout.getTranslationY() : -mContentLayout.getHeight();
+            final float fromAlpha = wasHiding ? mHeaderView.getAlpha() : 0f;
+            if (useLayerAnimations()) {
+                mContentLayout.setTranslationY(fromTranslation);
+                mHeaderView.setAlpha(fromAlpha);
+                Compat.startWithLayer(mContentLayout.animate().translationY(0f)
+                        .setDuration(mAnimationDuration), null);
+                Compat.startWithLayer(mHeaderView.animate().alpha(1f)
+                        .setDuration(mAnimationDuration), null);
+            } else {
+                mContentTranslationAnimator.setFloatValues(fromTranslation, 0f);
+                mHeaderAlphaAnimator.setFloatValues(fromAlpha, 1f);
+                mContentTranslationAnimator.start();
+                mHeaderAlphaAnimator.start();
+            }
         }
 
         return changeVis;
@@ -191,29 +219,87 @@ public class DefaultHeaderTransformer extends HeaderTransformer {
 
     @Override
     public boolean hideHeaderView() {
-        final boolean changeVis = mHeaderView.getVisibility() != View.GONE;
+        final boolean changeVis = !mHiding && mHeaderView.getVisibility() != View.GONE;
 
         if (changeVis) {
-            Animator animator;
+            cancelAnimators();
+            mHiding = true;
+
+            final boolean useLayers = useLayerAnimations();
             if (mContentLayout.getAlpha() >= 0.5f) {
                 // If the content layout is showing, translate and fade out
-                animator = new AnimatorSet();
-                ObjectAnimator transAnim = ObjectAnimator.ofFloat(mContentLayout, "translationY",
-                        0f, -mContentLayout.getHeight());
-                ObjectAnimator alphaAnim = ObjectAnimator.ofFloat(mHeaderView, "alpha", 1f, 0f);
-                ((AnimatorSet) animator).playTogether(transAnim, alphaAnim);
+                if (useLayers) {
+                    Compat.startWithLayer(mContentLayout.animate()
+                            .translationY(-mContentLayout.getHeight())
+                            .setDuration(mAnimationDuration), null);
+                } else {
+                    mContentTranslationAnimator.setFloatValues(mContentLayout.getTranslationY(),
+                            -mContentLayout.getHeight());
+                    mContentTranslationAnimator.start();
+                }
+            }
+            // If the content layout isn't showing (minimized), just fade out
+            if (useLayers) {
+                Compat.startWithLayer(mHeaderView.animate().alpha(0f)
+                        .setDuration(mAnimationDuration), mHideAnimationCallback);
             } else {
-                // If the content layout isn't showing (minimized), just fade out
-                animator = ObjectAnimator.ofFloat(mHeaderView, "alpha", 1f, 0f);
+                mHeaderAlphaAnimator.setFloatValues(mHeaderView.getAlpha(), 0f);
+                mHeaderAlphaAnimator.start();
             }
-            animator.setDuration(mAnimationDuration);
-            animator.addListener(new HideAnimationCallback());
-            animator.start();
         }
 
         return changeVis;
     }
 
+    /**
+     * Animate the header with hardware layers, through {@link android.view.ViewPropertyAnimator},
+     * instead of with animators which redraw the header views on every frame. Each frame then
+     * only changes the layers' properties, so a busy main thread has less to do per frame. Needs
+     * Jelly Bean or later, earlier versions keep using animators.
+     * <p/>
+     * Can also be enabled with the {@code pmLayerAnimations} attribute of the header style.
+     */
+    public void setLayerAnimationsEnabled(boolean enabled) {
+        if (mLayerAnimations != enabled) {
+            if (mHeaderView != null) {
+                // Don't leave an animation of the other kind running, but do finish a hide
+                cancelAnimators();
+                mHideAnimationCallback.run();
+            }
+            mLayerAnimations = enabled;
+        }
+    }
+
+    public boolean isLayerAnimationsEnabled() {
+        return mLayerAnimations;
+    }
+
+    private boolean useLayerAnimations() {
+        return mLayerAnimations && Compat.canAnimateWithLayer();
+    }
+
+    private void cancelAnimators() {
+        if (useLayerAnimations()) {
+            mHeaderView.animate().cancel();
+            mContentLayout.animate().cancel();
+        } else {
+            mHeaderAlphaAnimator.cancel();
+            mContentTranslationAnimator.cancel();
+        }
+    }
+
+    private void createAnimators() {
+        mHeaderAlphaAnimator = ObjectAnimator.ofFloat(mHeaderView, View.ALPHA, 0f, 1f);
+        mHeaderAlphaAnimator.setDuration(mAnimationDuration);
+        mHeaderAlphaAnimator.addListener(mHideAnimationCallback);
+
+        mContentTranslationAnimator = ObjectAnimator.ofFloat(mContentLayout, View.TRANSLATION_Y,
+                0f, 0f);
+        mContentTranslationAnimator.setDuration(mAnimationDuration);
+
+        mContentAlphaAnimator = ObjectAnimator.ofFloat(mContentLayout, View.ALPHA, 1f, 0f);
+    }
+
     /**
      * Set color to apply to the progress bar.
      * <p/>
@@ -253,53 +339,98 @@ public class DefaultHeaderTransformer extends HeaderTransformer {
 
 
     private void setupViewsFromStyles(Activity activity, View headerView) {
-        final TypedArray styleAttrs = obtainStyledAttrsFromThemeAttr(activity,
-                R.attr.pmHeaderStyle, R.styleable.PullMenuHeader);
+        final HeaderStyleCache.Key key = HeaderStyleCache.keyFor(getClass(), activity);
+        HeaderStyleCache.HeaderStyle style = HeaderStyleCache.get(key);
+        if (style == null) {
+            style = resolveHeaderStyle(activity);
+            HeaderStyleCache.put(key, style);
+        }
 
         // Retrieve the Action Bar size from the app theme or the Action Bar's style
         if (mContentLayout != null) {
-            final int height = styleAttrs.getDimensionPixelSize(
-                    R.styleable.PullMenuHeader_pmHeaderHeight, getActionBarSize(activity));
-            mContentLayout.getLayoutParams().height = height;
+            mContentLayout.getLayoutParams().height = style.headerHeight;
             mContentLayout.requestLayout();
         }
 
+        // If we have an opaque background we can remove the background from the content layout
+        if (mContentLayout != null && style.backgroundOpaque) {
+            mContentLayout.setBackgroundResource(0);
+        }
+
+        // Retrieve the Progress Bar Color the style
+        if (style.hasProgressBarColor) {
+            mProgressDrawableColor = style.progressBarColor;
+        }
+
+        mProgressBarStyle = style.progressBarStyle;
+
+        if (style.hasProgressBarHeight) {
+            mProgressBarHeight = style.progressBarHeight;
+        }
+
+        //SmoothProgressBar Style
+        if (style.smoothProgressBarStyle != 0) {
+            mHeaderProgressBar.applyStyle(style.smoothProgressBarStyle);
+        }
+
+        if (style.hasLayerAnimations) {
+            setLayerAnimationsEnabled(style.layerAnimations);
+        }
+    }
+
+    /**
+     * Read the header style values from the theme. The result is cached for the transformer
+     * class, the raw values the theme resolves and the configuration, so this is only called the
+     * first time they are seen.
+     */
+    private HeaderStyleCache.HeaderStyle resolveHeaderStyle(Activity activity) {
+        final HeaderStyleCache.HeaderStyle style = new HeaderStyleCache.HeaderStyle();
+        final TypedArray styleAttrs = obtainStyledAttrsFromThemeAttr(activity,
+                R.attr.pmHeaderStyle, R.styleable.PullMenuHeader);
+
+        // Retrieve the Action Bar size from the app theme or the Action Bar's style
+        style.headerHeight = styleAttrs.getDimensionPixelSize(
+                R.styleable.PullMenuHeader_pmHeaderHeight, getActionBarSize(activity));
+
         // Retrieve the Action Bar background from the app theme or the Action Bar's style (see #93)
         Drawable bg = styleAttrs.hasValue(R.styleable.PullMenuHeader_pmHeaderBackground)
                 ? styleAttrs.getDrawable(R.styleable.PullMenuHeader_pmHeaderBackground)
                 : getActionBarBackground(activity);
         if (bg != null) {
             //mHeaderTextView.setBackgroundDrawable(bg);
-
-            // If we have an opaque background we can remove the background from the content layout
-            if (mContentLayout != null && bg.getOpacity() == PixelFormat.OPAQUE) {
-                mContentLayout.setBackgroundResource(0);
-            }
+            style.backgroundOpaque = bg.getOpacity() == PixelFormat.OPAQUE;
         }
 
-        // Retrieve the Progress Bar Color the style
-        if (styleAttrs.hasValue(R.styleable.PullMenuHeader_pmProgressBarColor)) {
-            mProgressDrawableColor = styleAttrs.getColor(
+        style.hasProgressBarColor =
+                styleAttrs.hasValue(R.styleable.PullMenuHeader_pmProgressBarColor);
+        if (style.hasProgressBarColor) {
+            style.progressBarColor = styleAttrs.getColor(
                     R.styleable.PullMenuHeader_pmProgressBarColor, mProgressDrawableColor);
         }
 
-        mProgressBarStyle = styleAttrs.getInt(
+        style.progressBarStyle = styleAttrs.getInt(
                 R.styleable.PullMenuHeader_pmProgressBarStyle, PROGRESS_BAR_STYLE_INSIDE);
 
-        if (styleAttrs.hasValue(R.styleable.PullMenuHeader_pmProgressBarHeight)) {
-            mProgressBarHeight = styleAttrs.getDimensionPixelSize(
+        style.hasProgressBarHeight =
+                styleAttrs.hasValue(R.styleable.PullMenuHeader_pmProgressBarHeight);
+        if (style.hasProgressBarHeight) {
+            style.progressBarHeight = styleAttrs.getDimensionPixelSize(
                     R.styleable.PullMenuHeader_pmProgressBarHeight, mProgressBarHeight);
         }
 
         //SmoothProgressBar Style
-        if (styleAttrs.hasValue(R.styleable.PullMenuHeader_pmSmoothProgressBarStyle)) {
-            int spbStyleRes = styleAttrs.getResourceId(R.styleable.PullMenuHeader_pmSmoothProgressBarStyle, 0);
-            if (spbStyleRes != 0)
-                mHeaderProgressBar.applyStyle(spbStyleRes);
-
+        style.smoothProgressBarStyle = styleAttrs.getResourceId(
+                R.styleable.PullMenuHeader_pmSmoothProgressBarStyle, 0);
+
+        style.hasLayerAnimations =
+                styleAttrs.hasValue(R.styleable.PullMenuHeader_pmLayerAnimations);
+        if (style.hasLayerAnimations) {
+            style.layerAnimations = styleAttrs.getBoolean(
+                    R.styleable.PullMenuHeader_pmLayerAnimations, mLayerAnimations);
         }
 
         styleAttrs.recycle();
+        return style;
     }
 
     private void applyProgressBarStyle() {
@@ -320,12 +451,8 @@ public class DefaultHeaderTransformer extends HeaderTransformer {
 
     private void applyProgressBarSettings() {
         if (mHeaderProgressBar != null) {
-            ShapeDrawable shape = new ShapeDrawable();
-            shape.setShape(new RectShape());
-            shape.getPaint().setColor(mProgressDrawableColor);
-            ClipDrawable clipDrawable = new ClipDrawable(shape, Gravity.CENTER, ClipDrawable.HORIZONTAL);
-
-            mHeaderProgressBar.setProgressDrawable(clipDrawable);
+            mHeaderProgressBar.setProgressDrawable(
+                    ProgressDrawableCache.obtain(mProgressDrawableColor));
         }
     }
 
@@ -371,9 +498,22 @@ public class DefaultHeaderTransformer extends HeaderTransformer {
         return Build.VERSION_CODES.ICE_CREAM_SANDWICH;
     }
 
-    class HideAnimationCallback extends AnimatorListenerAdapter {
+    class HideAnimationCallback extends AnimatorListenerAdapter implements Runnable {
         @Override
         public void onAnimationEnd(Animator animation) {
+            run();
+        }
+
+        /**
+         * The end action of the layer animations.
+         */
+        @Override
+        public void run() {
+            // The header alpha animator also shows the header, and a hide which is cancelled to
+            // show it again has already been cleared
+            if (!mHiding) return;
+            mHiding = false;
+
             View headerView = getHeaderView();
             if (headerView != null) {
                 headerView.setVisibility(View.GONE);
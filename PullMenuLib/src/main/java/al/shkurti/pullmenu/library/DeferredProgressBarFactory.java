@@ -0,0 +1,149 @@
+package al.shkurti.pullmenu.library;
+
+import java.util.ArrayList;
+
+import org.xmlpull.v1.XmlPullParser;
+
+import android.content.Context;
+import android.content.res.XmlResourceParser;
+import android.util.AttributeSet;
+import android.util.Log;
+import android.util.Xml;
+import android.view.LayoutInflater;
+import android.view.View;
+import android.view.ViewGroup;
+import android.widget.ProgressBar;
+
+/**
+ * Lets a header be inflated off the main thread. Before Android N a ProgressBar remembers the
+ * thread it was created on, and posts every progress update if it is not called on that thread.
+ * So the progress bars of the layout are inflated as placeholders, and
+ * {@link #createProgressBars(View, int)} creates them on the main thread from the same layout
+ * attributes.
+ */
+final class DeferredProgressBarFactory implements LayoutInflater.Factory2 {
+
+    private static final String LOG_TAG = "DeferredProgressBar";
+
+    private final ClassLoader mClassLoader;
+    private int mProgressBarCount;
+
+    private DeferredProgressBarFactory(Context context) {
+        mClassLoader = context.getClassLoader();
+    }
+
+    /**
+     * @return an inflater for {@code context} which inflates progress bars as placeholders.
+     */
+    static LayoutInflater createInflater(Context context) {
+        final LayoutInflater inflater = LayoutInflater.from(context).cloneInContext(context);
+        // Runs before any factory the original inflater has
+        inflater.setFactory2(new DeferredProgressBarFactory(context));
+        return inflater;
+    }
+
+    @Override
+    public View onCreateView(View parent, String name, Context context, AttributeSet attrs) {
+        if (!isProgressBar(mClassLoader, name)) {
+            return null;
+        }
+        // The placeholder gets the id and the layout params of the progress bar
+        return new Placeholder(context, attrs, mProgressBarCount++);
+    }
+
+    @Override
+    public View onCreateView(String name, Context context, AttributeSet attrs) {
+        return onCreateView(null, name, context, attrs);
+    }
+
+    /**
+     * Replace the placeholders in {@code headerView} with progress bars created on this thread,
+     * which must be the main thread.
+     *
+     * @param layoutId the layout {@code headerView} was inflated from
+     * @return false if a progress bar could not be created, the header should then be inflated
+     *         again on the main thread.
+     */
+    static boolean createProgressBars(View headerView, int layoutId) {
+        final ArrayList<Placeholder> placeholders = new ArrayList<Placeholder>();
+        findPlaceholders(headerView, placeholders);
+
+        for (int i = 0, z = placeholders.size(); i < z; i++) {
+            final Placeholder placeholder = placeholders.get(i);
+            final View progressBar = createProgressBar(placeholder.getContext(), layoutId,
+                    placeholder.mIndex);
+            final ViewGroup parent = (ViewGroup) placeholder.getParent();
+            if (progressBar == null || parent == null) {
+                return false;
+            }
+            final int index = parent.indexOfChild(placeholder);
+            parent.removeViewAt(index);
+            parent.addView(progressBar, index, placeholder.getLayoutParams());
+        }
+        return true;
+    }
+
+    private static void findPlaceholders(View view, ArrayList<Placeholder> placeholders) {
+        if (view instanceof Placeholder) {
+            placeholders.add((Placeholder) view);
+        } else if (view instanceof ViewGroup) {
+            final ViewGroup group = (ViewGroup) view;
+            for (int i = 0, z = group.getChildCount(); i < z; i++) {
+                findPlaceholders(group.getChildAt(i), placeholders);
+            }
+        }
+    }
+
+    /**
+     * Read the layout again, up to the {@code index}th progress bar, and create it from its
+     * attributes.
+     */
+    private static View createProgressBar(Context context, int layoutId, int index) {
+        final ClassLoader classLoader = context.getClassLoader();
+        final XmlResourceParser parser = context.getResources().getLayout(layoutId);
+        try {
+            int count = 0;
+            int type;
+            while ((type = parser.next()) != XmlPullParser.END_DOCUMENT) {
+                if (type != XmlPullParser.START_TAG) continue;
+
+                final String name = parser.getName();
+                if ("include".equals(name)) {
+                    // The progress bars of included layouts were counted too, so give up
+                    return null;
+                }
+                if (isProgressBar(classLoader, name) && count++ == index) {
+                    return LayoutInflater.from(context).createView(getClassName(name), null,
+                            Xml.asAttributeSet(parser));
+                }
+            }
+        } catch (Exception e) {
+            Log.i(LOG_TAG, "Could not create the progress bar on the main thread.", e);
+        } finally {
+            parser.close();
+        }
+        return null;
+    }
+
+    private static String getClassName(String name) {
+        return name.indexOf('.') == -1 ? "android.widget." + name : name;
+    }
+
+    private static boolean isProgressBar(ClassLoader classLoader, String name) {
+        try {
+            return ProgressBar.class.isAssignableFrom(
+                    Class.forName(getClassName(name), false, classLoader));
+        } catch (ClassNotFoundException e) {
+            return false;
+        }
+    }
+
+    private static final class Placeholder extends View {
+        final int mIndex;
+
+        Placeholder(Context context, AttributeSet attrs, int index) {
+            super(context, attrs);
+            mIndex = index;
+        }
+    }
+}
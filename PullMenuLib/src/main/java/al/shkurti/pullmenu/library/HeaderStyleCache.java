@@ -0,0 +1,140 @@
+package al.shkurti.pullmenu.library;
+
+import java.util.Arrays;
+
+import al.shkurti.pullmenu.R;
+import android.content.Context;
+import android.content.res.Configuration;
+import android.content.res.Resources;
+import android.content.res.TypedArray;
+import android.support.v4.util.LruCache;
+import android.util.TypedValue;
+
+/**
+ * Process wide cache of the header style values which {@link DefaultHeaderTransformer} reads from
+ * the theme, so that further headers and configuration changes back to a configuration which has
+ * been seen already do not have to create drawables or call the transformer's Action Bar hooks.
+ * <p/>
+ * Entries are keyed by the raw values the theme resolves for the header style, the Action Bar
+ * background and the Action Bar size, rather than by the style resources. A missing header style
+ * reads its values straight from the theme, and style values can be references to theme
+ * attributes, so two themes which point to the same styles can still resolve different values.
+ * The key also holds the configuration the dimensions are converted with, and the transformer
+ * class, because a subclass can override how the Action Bar size and background are read.
+ */
+final class HeaderStyleCache {
+
+    private static final int MAX_SIZE = 8;
+
+    // The Action Bar style attributes the header falls back to
+    private static final int[] ACTION_BAR_ATTRS = {android.R.attr.background};
+
+    private static final LruCache<Key, HeaderStyle> sCache =
+            new LruCache<Key, HeaderStyle>(MAX_SIZE);
+
+    private HeaderStyleCache() {}
+
+    /**
+     * The resolved values of the header style.
+     */
+    static final class HeaderStyle {
+        int headerHeight;
+        boolean backgroundOpaque;
+        boolean hasProgressBarColor;
+        int progressBarColor;
+        int progressBarStyle;
+        boolean hasProgressBarHeight;
+        int progressBarHeight;
+        int smoothProgressBarStyle;
+        boolean hasLayerAnimations;
+        boolean layerAnimations;
+    }
+
+    /**
+     * @param transformerClass the class of the transformer which resolves the style
+     * @return the key of the style of {@code context}, which reads the raw attribute values from
+     *         the theme but does not create any drawables.
+     */
+    static Key keyFor(Class<?> transformerClass, Context context) {
+        final Resources.Theme theme = context.getTheme();
+        final TypedValue value = new TypedValue();
+
+        final int[] headerAttrs = R.styleable.PullMenuHeader;
+        final int[] values = new int[(headerAttrs.length + ACTION_BAR_ATTRS.length + 1) * 3];
+        int count = 0;
+
+        TypedArray a = context.obtainStyledAttributes(
+                resolveResourceId(theme, R.attr.pmHeaderStyle, value), headerAttrs);
+        for (int i = 0; i < headerAttrs.length; i++) {
+            count = putValue(values, count, a.getValue(i, value) ? value : null);
+        }
+        a.recycle();
+
+        a = context.obtainStyledAttributes(
+                resolveResourceId(theme, android.R.attr.actionBarStyle, value), ACTION_BAR_ATTRS);
+        for (int i = 0; i < ACTION_BAR_ATTRS.length; i++) {
+            count = putValue(values, count, a.getValue(i, value) ? value : null);
+        }
+        a.recycle();
+
+        putValue(values, count,
+                theme.resolveAttribute(android.R.attr.actionBarSize, value, true) ? value : null);
+
+        return new Key(transformerClass, values,
+                new Configuration(context.getResources().getConfiguration()));
+    }
+
+    /**
+     * @return the resource id of the style {@code attr} points to in {@code theme}, or 0.
+     */
+    private static int resolveResourceId(Resources.Theme theme, int attr, TypedValue value) {
+        // The value is reused, so don't let an attribute which doesn't resolve keep the last id
+        return theme.resolveAttribute(attr, value, true) ? value.resourceId : 0;
+    }
+
+    private static int putValue(int[] values, int count, TypedValue value) {
+        values[count++] = value != null ? value.type : TypedValue.TYPE_NULL;
+        values[count++] = value != null ? value.data : 0;
+        values[count++] = value != null ? value.resourceId : 0;
+        return count;
+    }
+
+    static synchronized HeaderStyle get(Key key) {
+        return sCache.get(key);
+    }
+
+    static synchronized void put(Key key, HeaderStyle style) {
+        sCache.put(key, style);
+    }
+
+    static final class Key {
+        final Class<?> transformerClass;
+        // The type, data and resource id of every attribute the style is read from
+        final int[] values;
+        final Configuration configuration;
+
+        Key(Class<?> transformerClass, int[] values, Configuration configuration) {
+            this.transformerClass = transformerClass;
+            this.values = values;
+            this.configuration = configuration;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof Key)) return false;
+            final Key other = (Key) o;
+            return transformerClass == other.transformerClass
+                    && Arrays.equals(values, other.values)
+                    && configuration.equals(other.configuration);
+        }
+
+        @Override
+        public int hashCode() {
+            int result = transformerClass.hashCode();
+            result = 31 * result + Arrays.hashCode(values);
+            result = 31 * result + configuration.hashCode();
+            return result;
+        }
+    }
+}
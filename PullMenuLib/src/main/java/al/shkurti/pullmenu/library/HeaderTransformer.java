@@ -1,5 +1,6 @@
 package al.shkurti.pullmenu.library;
 
+import al.shkurti.pullmenu.library.gesture.MenuPositionMapper;
 import android.app.Activity;
 import android.content.res.Configuration;
 import android.view.View;
@@ -37,6 +38,41 @@ public abstract class HeaderTransformer {
      */
     public void onPulled(float percentagePulled) {}
 
+    /**
+     * Called when the user has pulled on the scrollable view, along with the movement of the
+     * finger estimated from all of the touch samples, including the ones batched between
+     * frames. By default this calls {@link #onPulled(float)}.
+     *
+     * @param percentagePulled value between 0.0f and 1.0f depending on how far the
+     *                         user has pulled.
+     * @param velocityY vertical velocity of the finger in pixels per second, positive when
+     *                  pulling down.
+     * @param accelerationY vertical acceleration of the finger in pixels per second squared.
+     */
+    public void onPulled(float percentagePulled, float velocityY, float accelerationY) {
+        onPulled(percentagePulled);
+    }
+
+    /**
+     * Called when the user has pulled on the scrollable view, along with the pull state of
+     * the attacher. The progress recorded in {@code pullState} should match what the header
+     * displays, the menu item the pull selects is decided by the attacher. By default this
+     * records the progress from {@link MenuPositionMapper#getPercentage(float, int)} and calls
+     * {@link #onPulled(float, float, float)}.
+     *
+     * @param pullState the pull state of the attacher which the header belongs to.
+     * @param percentagePulled value between 0.0f and 1.0f depending on how far the
+     *                         user has pulled.
+     * @param velocityY vertical velocity of the finger in pixels per second, positive when
+     *                  pulling down.
+     * @param accelerationY vertical acceleration of the finger in pixels per second squared.
+     */
+    public void onPulled(PullState pullState, float percentagePulled, float velocityY,
+            float accelerationY) {
+        pullState.setProgress(MenuPositionMapper.getPercentage(percentagePulled, 100));
+        onPulled(percentagePulled, velocityY, accelerationY);
+    }
+
     /**
      * Called when a refresh has begun. Theoretically this call is similar
      * to that provided from {@link al.shkurti.pullmenu.library.listeners.OnRefreshListener} but is more suitable
@@ -15,6 +15,10 @@ public final class Options {
     private static final boolean DEFAULT_REFRESH_ON_UP = false;
     private static final int DEFAULT_REFRESH_MINIMIZED_DELAY = 1 * 1000;
     private static final boolean DEFAULT_REFRESH_MINIMIZE = false;
+    private static final boolean DEFAULT_FRAME_ALIGNED_PULL = false;
+    private static final boolean DEFAULT_PREDICTIVE_PULL = false;
+    private static final boolean DEFAULT_FLING_TO_SELECT = false;
+    private static final boolean DEFAULT_LAZY_HEADER = false;
 
     public static Builder create() {
         return new Builder();
@@ -39,6 +43,30 @@ public final class Options {
      */
     boolean refreshMinimize = DEFAULT_REFRESH_MINIMIZE;
 
+    /**
+     * Whether pull updates should be coalesced so that the header is updated at most once per
+     * display frame, with the latest pull, instead of once per touch event.
+     */
+    boolean frameAlignedPull = DEFAULT_FRAME_ALIGNED_PULL;
+
+    /**
+     * Whether the header should follow where the finger is expected to be one display frame
+     * ahead, instead of where the latest touch event reported it.
+     */
+    boolean predictivePull = DEFAULT_PREDICTIVE_PULL;
+
+    /**
+     * Whether a fast downward fling at the end of the pull should select the menu item the pull
+     * would have reached, instead of the one under the finger.
+     */
+    boolean flingToSelect = DEFAULT_FLING_TO_SELECT;
+
+    /**
+     * Whether the header should only be created, and added to the window, when it is first
+     * needed instead of when the layout is set up.
+     */
+    boolean lazyHeader = DEFAULT_LAZY_HEADER;
+
     public static class Builder {
         final Options mOptions = new Options();
 
@@ -113,6 +141,47 @@ public final class Options {
             return this;
         }
 
+        /**
+         * Whether pull updates should be applied to the header once per display frame instead
+         * of on every touch event. Useful on devices whose touch screen reports events faster
+         * than the display refresh rate.
+         */
+        public Builder frameAlignedPull(boolean enabled) {
+            mOptions.frameAlignedPull = enabled;
+            return this;
+        }
+
+        /**
+         * Whether the header and menu indicator should be driven from the finger position
+         * predicted one display frame ahead, which hides some of the touch latency. The real
+         * position is always used to decide on refreshes and when the pull is released.
+         */
+        public Builder predictivePull(boolean enabled) {
+            mOptions.predictivePull = enabled;
+            return this;
+        }
+
+        /**
+         * Whether a fast downward fling when releasing the pull should be projected forward to
+         * select a menu item further down the menu, so that the far items can be reached with a
+         * short and quick gesture.
+         */
+        public Builder flingToSelect(boolean enabled) {
+            mOptions.flingToSelect = enabled;
+            return this;
+        }
+
+        /**
+         * Whether the header should be created when the first touch lands on a view which is
+         * ready for a pull, or when refreshing is first set, instead of when the layout is set
+         * up. Saves the inflation and the window of the header on screens which are never
+         * pulled.
+         */
+        public Builder lazyHeader(boolean enabled) {
+            mOptions.lazyHeader = enabled;
+            return this;
+        }
+
         /**
          * @return the built {@link al.shkurti.pullmenu.library.Options} instance.
          */
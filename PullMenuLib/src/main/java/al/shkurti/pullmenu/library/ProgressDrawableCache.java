@@ -0,0 +1,43 @@
+package al.shkurti.pullmenu.library;
+
+import android.graphics.drawable.ClipDrawable;
+import android.graphics.drawable.Drawable;
+import android.graphics.drawable.ShapeDrawable;
+import android.graphics.drawable.shapes.RectShape;
+import android.support.v4.util.LruCache;
+import android.view.Gravity;
+
+/**
+ * Process wide cache of the progress drawables of the header's progress bar, keyed by color.
+ * Headers get new drawables from the cached constant state, which share the shape and paint of
+ * the cached drawable instead of building a new drawable graph each time.
+ */
+final class ProgressDrawableCache {
+
+    private static final int MAX_SIZE = 16;
+
+    private static final LruCache<Integer, Drawable.ConstantState> sCache =
+            new LruCache<Integer, Drawable.ConstantState>(MAX_SIZE);
+
+    private ProgressDrawableCache() {}
+
+    /**
+     * @return a new progress drawable of the given color. It must not be mutated, as that would
+     *         also change the drawables of the other headers with the same color.
+     */
+    static Drawable obtain(int color) {
+        Drawable.ConstantState state;
+        synchronized (sCache) {
+            state = sCache.get(color);
+            if (state == null) {
+                ShapeDrawable shape = new ShapeDrawable();
+                shape.setShape(new RectShape());
+                shape.getPaint().setColor(color);
+                state = new ClipDrawable(shape, Gravity.CENTER, ClipDrawable.HORIZONTAL)
+                        .getConstantState();
+                sCache.put(color, state);
+            }
+        }
+        return state.newDrawable();
+    }
+}
@@ -2,11 +2,13 @@
 package al.shkurti.pullmenu.library;
 
 import java.util.ArrayList;
-import java.util.WeakHashMap;
 
 import al.shkurti.pullmenu.R;
+import al.shkurti.pullmenu.library.gesture.MenuPositionMapper;
+import al.shkurti.pullmenu.library.gesture.PullGestureEngine;
 import al.shkurti.pullmenu.library.listeners.HeaderViewListener;
 import al.shkurti.pullmenu.library.listeners.OnRefreshListener;
+import al.shkurti.pullmenu.library.sdk.Compat;
 import al.shkurti.pullmenu.library.slidingtabstrip.MenuSlidingTabStrip;
 import al.shkurti.pullmenu.library.viewdelegates.ViewDelegate;
 import fr.castorflex.android.smoothprogressbar.SmoothProgressBar;
@@ -18,6 +20,7 @@ import android.content.res.Configuration;
 import android.graphics.PixelFormat;
 import android.graphics.Rect;
 import android.os.Build;
+import android.os.SystemClock;
 import android.util.Log;
 import android.view.Gravity;
 import android.view.LayoutInflater;
@@ -32,6 +35,10 @@ public class PullMenuAttacher {
     private static final boolean DEBUG = false;
     private static final String LOG_TAG = "PullMenuAttacher";
 
+    /* Fling to select */
+    private static final int FLING_SELECT_MIN_VELOCITY_DIP = 1000;
+    private static final int FLING_SELECT_PROJECTION_TIME = 100;
+
     /* Member Variables */
 
     private EnvironmentDelegate mEnvironmentDelegate;
@@ -43,30 +50,45 @@ public class PullMenuAttacher {
     private View mHeaderView;
     private HeaderViewListener mHeaderViewListener;
 
-    private final int mTouchSlop;
     private final float mRefreshScrollDistance;
 
-    private float mInitialMotionY, mLastMotionY, mPullBeginY;
-    private float mInitialMotionX;
-    private boolean mIsBeingDragged, mIsRefreshing, mHandlingTouchEventFromDown;
+    private final PullGestureEngine mGestureEngine;
+    private final PullState mPullState = new PullState();
+    private boolean mIsRefreshing, mHandlingTouchEventFromDown;
     private View mViewBeingDragged;
 
-    private final WeakHashMap<View, ViewDelegate> mRefreshableViews;
+    private final RefreshableViewIndex mRefreshableViews;
 
     private final boolean mRefreshOnUp;
     private final int mRefreshMinimizeDelay;
     private final boolean mRefreshMinimize;
+    private final boolean mFrameAlignedPull;
+    private float mPendingPullFraction;
+    private boolean mPullUpdatePosted;
     private boolean mIsDestroyed = false;
 
-    private final int[] mViewLocationResult = new int[2];
     private final Rect mRect = new Rect();
 
     private final AddHeaderViewRunnable mAddHeaderViewRunnable;
+
+    // What the header is created from, kept until it is created when it is lazy
+    private Options mHeaderOptions;
+    private int mHeaderTextColor, mHeaderBackgroundColor, mHeaderProgressBarColor;
+    private ArrayList<String> mHeaderItems;
     
     MenuSlidingTabStrip mMenuSlidingTabStrip;
     boolean pullStarted,pullEnded;
 
     protected PullMenuAttacher(Activity activity, Options options,int textColor, int backgroundColor, int progresBarColor, ArrayList<String> mItems) {
+        this(activity, options, textColor, backgroundColor, progresBarColor, mItems, null);
+    }
+
+    /**
+     * @param headerView a header which has already been inflated with
+     *            {@link #inflateHeaderView(Context, Options, ViewGroup, int, int, ArrayList)}, or
+     *            null to inflate it here.
+     */
+    protected PullMenuAttacher(Activity activity, Options options,int textColor, int backgroundColor, int progresBarColor, ArrayList<String> mItems, View headerView) {
         if (activity == null) {
             throw new IllegalArgumentException("activity cannot be null");
         }
@@ -76,13 +98,14 @@ public class PullMenuAttacher {
         }
 
         mActivity = activity;
-        mRefreshableViews = new WeakHashMap<View, ViewDelegate>();
+        mRefreshableViews = new RefreshableViewIndex();
 
         // Copy necessary values from options
         mRefreshScrollDistance = options.refreshScrollDistance;
         mRefreshOnUp = options.refreshOnUp;
         mRefreshMinimizeDelay = options.refreshMinimizeDelay;
         mRefreshMinimize = options.refreshMinimize;
+        mFrameAlignedPull = options.frameAlignedPull;
 
         // EnvironmentDelegate
         mEnvironmentDelegate = options.environmentDelegate != null
@@ -94,38 +117,115 @@ public class PullMenuAttacher {
                 ? options.headerTransformer
                 : createDefaultHeaderTransformer();
 
-        // Get touch slop for use later
-        mTouchSlop = ViewConfiguration.get(activity).getScaledTouchSlop();
+        // Get touch slop for the gesture engine
+        mGestureEngine = new PullGestureEngine(
+                ViewConfiguration.get(activity).getScaledTouchSlop(), mRefreshOnUp);
+        // The default zones until the header's menu indicator brings its own table
+        mGestureEngine.setMenuItemCount(mItems != null ? mItems.size() : 0);
+        if (options.predictivePull) {
+            // Look ahead one display frame
+            final float refreshRate = activity.getWindowManager().getDefaultDisplay().getRefreshRate();
+            mGestureEngine.setPredictionTime(1000f / (refreshRate > 0f ? refreshRate : 60f));
+        }
+        if (options.flingToSelect) {
+            final float density = activity.getResources().getDisplayMetrics().density;
+            mGestureEngine.setFlingToSelect(FLING_SELECT_MIN_VELOCITY_DIP * density,
+                    FLING_SELECT_PROJECTION_TIME);
+        }
 
         // Get Window Decor View
         final ViewGroup decorView = (ViewGroup) activity.getWindow().getDecorView();
 
-        // Create Header view and then add to Decor View
-        mHeaderView = LayoutInflater.from(mEnvironmentDelegate.getContextForInflater(activity)).inflate(
-                options.headerLayout, decorView, false);
-        if (mHeaderView == null) {
-            throw new IllegalArgumentException("Must supply valid layout id for header.");
-        }
+        // Keep the refreshable views' screen rects up to date with the window's layout passes
+        mRefreshableViews.attach(decorView);
 
-        mHeaderView.setBackgroundColor(backgroundColor);
+        mAddHeaderViewRunnable = new AddHeaderViewRunnable();
 
-        //costumize menu tab strip
-        mMenuSlidingTabStrip = (MenuSlidingTabStrip) mHeaderView.findViewById(R.id.menuIndicator);
+        mHeaderOptions = options;
+        mHeaderTextColor = textColor;
+        mHeaderBackgroundColor = backgroundColor;
+        mHeaderProgressBarColor = progresBarColor;
+        mHeaderItems = mItems;
 
-        mMenuSlidingTabStrip.setTextColorResource(textColor);
+        if (headerView != null || !options.lazyHeader) {
+            createHeaderView(headerView);
+        }
+    }
 
-        // set the array for menu items
-        mMenuSlidingTabStrip.setArray(mItems);
+    /**
+     * Create the Header View, unless it has been created already.
+     */
+    private void ensureHeaderView() {
+        if (mHeaderView == null && !mIsDestroyed) {
+            createHeaderView(null);
+        }
+    }
+
+    private void createHeaderView(View headerView) {
+        // Create Header view and then add to Decor View
+        if (headerView == null) {
+            headerView = inflateHeaderView(mEnvironmentDelegate.getContextForInflater(mActivity),
+                    mHeaderOptions, (ViewGroup) mActivity.getWindow().getDecorView(),
+                    mHeaderTextColor, mHeaderBackgroundColor, mHeaderItems);
+        }
+        mHeaderView = headerView;
+        mMenuSlidingTabStrip = (MenuSlidingTabStrip) mHeaderView.findViewById(R.id.menuIndicator);
+        mGestureEngine.setMenuPositionTable(mMenuSlidingTabStrip.getPositionTable());
         
         // Make Header View invisible so it still gets a layout pass
         mHeaderView.setVisibility(View.INVISIBLE);
 
         // Notify transformer
-        mHeaderTransformer.onViewCreated(activity, mHeaderView,progresBarColor);
+        mHeaderTransformer.onViewCreated(mActivity, mHeaderView, mHeaderProgressBarColor);
+
+        mHeaderOptions = null;
+        mHeaderItems = null;
 
         // Now HeaderView to Activity
-        mAddHeaderViewRunnable = new AddHeaderViewRunnable();
-        mAddHeaderViewRunnable.start();
+        if (mActivity.getWindow().getDecorView().getWindowToken() != null) {
+            // Created on demand, so add it now rather than a frame later
+            addHeaderViewToActivity(mHeaderView);
+        } else {
+            mAddHeaderViewRunnable.start();
+        }
+    }
+
+    /**
+     * Inflate the header and fill its menu indicator. This does not touch the window, so it can
+     * be called off the main thread as long as the header's views can be created there, see
+     * {@link DeferredProgressBarFactory}.
+     *
+     * @param context the context to inflate the header with
+     * @param root the view which the header will be added to, only used for its layout params
+     */
+    static View inflateHeaderView(Context context, Options options, ViewGroup root,
+            int textColor, int backgroundColor, ArrayList<String> items) {
+        return inflateHeaderView(LayoutInflater.from(context), options, root, textColor,
+                backgroundColor, items);
+    }
+
+    /**
+     * Same as {@link #inflateHeaderView(Context, Options, ViewGroup, int, int, ArrayList)}, with
+     * the inflater to use.
+     */
+    static View inflateHeaderView(LayoutInflater inflater, Options options, ViewGroup root,
+            int textColor, int backgroundColor, ArrayList<String> items) {
+        final View headerView = inflater.inflate(options.headerLayout, root, false);
+        if (headerView == null) {
+            throw new IllegalArgumentException("Must supply valid layout id for header.");
+        }
+
+        headerView.setBackgroundColor(backgroundColor);
+
+        //costumize menu tab strip
+        final MenuSlidingTabStrip menuSlidingTabStrip =
+                (MenuSlidingTabStrip) headerView.findViewById(R.id.menuIndicator);
+
+        menuSlidingTabStrip.setTextColorResource(textColor);
+
+        // set the array for menu items, this also measures the titles
+        menuSlidingTabStrip.setArray(items);
+        return headerView;
     }
 
     /**
@@ -152,11 +252,15 @@ public class PullMenuAttacher {
     }
 
     void useViewDelegate(Class<?> viewClass, ViewDelegate delegate) {
-        for (View view : mRefreshableViews.keySet()) {
-            if (viewClass.isInstance(view)) {
-                mRefreshableViews.put(view, delegate);
-            }
-        }
+        mRefreshableViews.useViewDelegate(viewClass, delegate);
+    }
+
+    /**
+     * Re-read where the refreshable views are on the next touch, after they have been moved
+     * without a layout pass or a scroll.
+     */
+    void invalidateRefreshableViews() {
+        mRefreshableViews.invalidate();
     }
 
     /**
@@ -173,6 +277,9 @@ public class PullMenuAttacher {
      * @param newConfig The new configuration
      */
     public void onConfigurationChanged(Configuration newConfig) {
+        // A lazy header picks up the new configuration when it is created
+        if (mHeaderView == null) return;
+
         mHeaderTransformer.onConfigurationChanged(mActivity, newConfig);
     }
 
@@ -215,13 +322,21 @@ public class PullMenuAttacher {
         if (mIsDestroyed) return; // We've already been destroyed
 
         // Remove the Header View from the Activity
-        removeHeaderViewFromActivity(mHeaderView);
+        cancelPendingPull();
+        if (mHeaderView != null) {
+            removeHeaderViewFromActivity(mHeaderView);
+        } else {
+            mAddHeaderViewRunnable.finish();
+        }
 
         // Lets clear out all of our internal state
         clearRefreshableViews();
+        mRefreshableViews.detach();
 
         mActivity = null;
         mHeaderView = null;
+        mHeaderOptions = null;
+        mHeaderItems = null;
         mHeaderViewListener = null;
         mEnvironmentDelegate = null;
         mHeaderTransformer = null;
@@ -239,7 +354,7 @@ public class PullMenuAttacher {
 
     /**
      * @return The Header View which is displayed when the user is pulling, or
-     *         we are refreshing.
+     *         we are refreshing. Null while a lazy header has not been created yet.
      */
     final View getHeaderView() {
         return mHeaderView;
@@ -263,73 +378,42 @@ public class PullMenuAttacher {
             return false;
         }
 
-        final float x = event.getX(), y = event.getY();
-
-        switch (event.getAction()) {
-            case MotionEvent.ACTION_MOVE: {
-            	//Log.e("MotionEvent.ACTION_MOVE ", " ok ");
-                // We're not currently being dragged so check to see if the user has
-                // scrolled enough
-                if (!mIsBeingDragged && mInitialMotionY > 0f) {
-                    final float yDiff = y - mInitialMotionY;
-                    final float xDiff = x - mInitialMotionX;
+        // A nested scrolling child is reporting the pull, so leave its touch events alone
+        if (mGestureEngine.isNestedPull()) {
+            return false;
+        }
 
-                    if (Math.abs(yDiff) > Math.abs(xDiff) && yDiff > mTouchSlop) {
-                        mIsBeingDragged = true;
-                        onPullStarted(y);
-                    } else if (yDiff < -mTouchSlop) {
-                        resetTouch();
-                    }
-                }
-                break;
-            }
+        final int action = event.getAction();
+        boolean readyForPull = false;
 
-            case MotionEvent.ACTION_DOWN: {
-                // If we're already refreshing, ignore
-                if (canRefresh(true)) {
-                    for (View view : mRefreshableViews.keySet()) {
-                        if (isViewBeingDragged(view, event)) {
-                            mInitialMotionX = x;
-                            mInitialMotionY = y;
-                            mViewBeingDragged = view;
-                        }
-                    }
-                }
-                break;
-            }
+        if (action == MotionEvent.ACTION_MOVE) {
+            addHistoricalSamples(event);
+        }
 
-            case MotionEvent.ACTION_CANCEL:
-            case MotionEvent.ACTION_UP: {
-                resetTouch();
-                break;
+        // If we're already refreshing, ignore
+        if (action == MotionEvent.ACTION_DOWN && canRefresh(true)) {
+            final View view = mRefreshableViews.findViewReadyForPull(
+                    (int) event.getRawX(), (int) event.getRawY());
+            if (view != null) {
+                mViewBeingDragged = view;
+                readyForPull = true;
+                // The pull can't start before the touch slop is crossed, which leaves time to
+                // create a lazy header and for its window to be laid out
+                ensureHeaderView();
             }
         }
 
-        if (DEBUG) Log.d(LOG_TAG, "onInterceptTouchEvent. Returning " + mIsBeingDragged);
-
-        return mIsBeingDragged;
-    }
-
-    final boolean isViewBeingDragged(View view, MotionEvent event) {
-        if (view.isShown() && mRefreshableViews.containsKey(view)) {
-            // First we need to set the rect to the view's screen co-ordinates
-            view.getLocationOnScreen(mViewLocationResult);
-            final int viewLeft = mViewLocationResult[0], viewTop = mViewLocationResult[1];
-            mRect.set(viewLeft, viewTop, viewLeft + view.getWidth(), viewTop + view.getHeight());
+        final int result = mGestureEngine.onInterceptTouchEvent(action, event.getX(), event.getY(),
+                event.getEventTime(), readyForPull);
+        if (result == PullGestureEngine.RESULT_PULL_STARTED) {
+            onPullStarted();
+        } else if (action == MotionEvent.ACTION_UP || action == MotionEvent.ACTION_CANCEL) {
+            resetTouch();
+        }
 
-            if (DEBUG) Log.d(LOG_TAG, "isViewBeingDragged. View Rect: " + mRect.toString());
+        if (DEBUG) Log.d(LOG_TAG, "onInterceptTouchEvent. Returning " + mGestureEngine.isBeingDragged());
 
-            final int rawX = (int) event.getRawX(), rawY = (int) event.getRawY();
-            if (mRect.contains(rawX, rawY)) {
-                // The Touch Event is within the View's display Rect
-                ViewDelegate delegate = mRefreshableViews.get(view);
-                if (delegate != null) {
-                    // Now call the delegate, converting the X/Y into the View's co-ordinate system
-                    return delegate.isReadyForPull(view, rawX - mRect.left, rawY - mRect.top);
-                }
-            }
-        }
-        return false;
+        return mGestureEngine.isBeingDragged();
     }
 
     final boolean onTouchEvent(MotionEvent event) {
@@ -343,8 +427,8 @@ public class PullMenuAttacher {
         }
 
         // If we're being called from ACTION_DOWN then we must call through to
-        // onInterceptTouchEvent until it sets mIsBeingDragged
-        if (mHandlingTouchEventFromDown && !mIsBeingDragged) {
+        // onInterceptTouchEvent until the pull has started
+        if (mHandlingTouchEventFromDown && !mGestureEngine.isBeingDragged()) {
             onInterceptTouchEvent(event);
             return true;
         }
@@ -353,47 +437,128 @@ public class PullMenuAttacher {
             return false;
         }
 
-        switch (event.getAction()) {
-            case MotionEvent.ACTION_MOVE: {
-                // If we're already refreshing ignore it
-                if (isRefreshing()) {
-                    return false;
-                }
+        final int action = event.getAction();
 
-                final float y = event.getY();
+        // If we're already refreshing ignore it
+        if (action == MotionEvent.ACTION_MOVE && isRefreshing()) {
+            return false;
+        }
 
-                if (mIsBeingDragged && y != mLastMotionY) {
+        if (action == MotionEvent.ACTION_MOVE) {
+            addHistoricalSamples(event);
+        }
 
-                	/**
-                	 * Check if teh user scrolls up more than he is allowed, 
-                	 * this depends from the start point, error case:  when he scrolls 
-                	 * above the starting point the its detected as he is scrolling down,
-                	 * this part of code fixes that
-                	 * */
-                	if(mInitialMotionY>y){
-                		break;
-                	}
-                    onPull(mViewBeingDragged, y);
-                }
-                break;
-            }
+        mGestureEngine.setScrollNeededForRefresh(getScrollNeededForRefresh(mViewBeingDragged));
+        onGestureResult(mGestureEngine.onTouchEvent(action, event.getX(), event.getY(),
+                event.getEventTime()));
 
-            case MotionEvent.ACTION_CANCEL:
-            case MotionEvent.ACTION_UP: {
-                checkScrollForRefresh(mViewBeingDragged);
-                if (mIsBeingDragged) {
-                	if(triggerMenuAction()){
+        if (action == MotionEvent.ACTION_UP || action == MotionEvent.ACTION_CANCEL) {
+            resetTouch();
+        }
 
-                    }else{
-                        onPullEnded();
-                    }
+        return true;
+    }
+
+    /**
+     * Called when a nested scrolling child of the layout starts scrolling vertically.
+     *
+     * @return true if the unconsumed scroll of {@code target} should be used to pull.
+     */
+    final boolean onStartNestedScroll(View target) {
+        if (isRefreshing() || !canRefresh(true) || mGestureEngine.isBeingDragged()
+                || !mRefreshableViews.contains(target)) {
+            return false;
+        }
+
+        // The child only reports unconsumed scroll once it can't scroll up any further, so
+        // there is no need to ask the ViewDelegate whether it is ready for a pull. The
+        // ACTION_DOWN hit-test skipped the child too, so this is where a lazy header is created
+        // when the child is already at the top
+        mViewBeingDragged = target;
+        if (!target.canScrollVertically(-1)) {
+            ensureHeaderView();
+        }
+        mGestureEngine.setScrollNeededForRefresh(getScrollNeededForRefresh(target));
+        mGestureEngine.startNestedPull(SystemClock.uptimeMillis());
+        return true;
+    }
+
+    /**
+     * Called before a nested scrolling child scrolls, so that scrolling back up reduces the
+     * pull before the child's content starts scrolling again.
+     *
+     * @return how much of {@code dy} was consumed.
+     */
+    final int onNestedPreScroll(int dy) {
+        if (dy <= 0 || !mGestureEngine.isNestedPull() || !mGestureEngine.isBeingDragged()) {
+            return 0;
+        }
+        final int consumed = Math.min(dy, (int) Math.ceil(mGestureEngine.getNestedPullDistance()));
+        onGestureResult(mGestureEngine.onNestedScroll(-consumed, SystemClock.uptimeMillis()));
+        return consumed;
+    }
+
+    /**
+     * Called after a nested scrolling child scrolls, with the scroll the child couldn't consume.
+     */
+    final void onNestedScroll(int dyUnconsumed) {
+        if (dyUnconsumed < 0 && !isRefreshing()) {
+            onGestureResult(mGestureEngine.onNestedScroll(-dyUnconsumed, SystemClock.uptimeMillis()));
+        }
+    }
+
+    /**
+     * @return true if a fling of the nested scrolling child should be consumed, as it would
+     *         otherwise scroll the content while the header is being pulled.
+     */
+    final boolean onNestedPreFling() {
+        return mGestureEngine.isNestedPull() && mGestureEngine.isBeingDragged();
+    }
+
+    final void onStopNestedScroll() {
+        if (mGestureEngine.isNestedPull()) {
+            onGestureResult(mGestureEngine.stopNestedPull(SystemClock.uptimeMillis()));
+            resetTouch();
+        }
+    }
+
+    private void onGestureResult(int result) {
+        if (result != PullGestureEngine.RESULT_NONE && result != PullGestureEngine.RESULT_PULLED) {
+            // Make sure the header has caught up with the pull before it changes state
+            flushPendingPull();
+        }
+
+        switch (result) {
+            case PullGestureEngine.RESULT_PULL_STARTED:
+                onPullStarted();
+                break;
+            case PullGestureEngine.RESULT_PULLED:
+                onPull(mGestureEngine.getPullFraction());
+                break;
+            case PullGestureEngine.RESULT_RELEASE_TO_REFRESH:
+                mHeaderTransformer.onReleaseToRefresh();
+                break;
+            case PullGestureEngine.RESULT_REFRESH:
+            case PullGestureEngine.RESULT_RELEASED_REFRESH:
+                setRefreshingInt(mViewBeingDragged, true, true);
+                break;
+            case PullGestureEngine.RESULT_RELEASED:
+                if (mGestureEngine.isReleaseAdjusted()) {
+                    // Move the header and menu to the pull the release is decided on
+                    mHeaderTransformer.onPulled(mPullState, mGestureEngine.getPullFraction(),
+                            mGestureEngine.getVelocityY(), mGestureEngine.getAccelerationY());
+                }
+                if (!triggerMenuAction()) {
+                    onPullEnded();
                 }
-                resetTouch();
                 break;
-            }
         }
+    }
 
-        return true;
+    private void addHistoricalSamples(MotionEvent event) {
+        for (int i = 0, z = event.getHistorySize(); i < z; i++) {
+            mGestureEngine.addHistoricalSample(event.getHistoricalY(i), event.getHistoricalEventTime(i));
+        }
     }
 
     void minimizeHeader() {
@@ -407,35 +572,52 @@ public class PullMenuAttacher {
     }
 
     void resetTouch() {
-        mIsBeingDragged = false;
+        mGestureEngine.reset();
         mHandlingTouchEventFromDown = false;
-        mInitialMotionY = mLastMotionY = mPullBeginY = -1f;
+        cancelPendingPull();
+        mPullState.reset();
     }
 
-    void onPullStarted(float y) {
+    void onPullStarted() {
         if (DEBUG) {
             Log.d(LOG_TAG, "onPullStarted");
         }
+        // Only a nested pull of a view which was not at the top when its nested scroll started
+        // gets here without a header
+        ensureHeaderView();
         showHeaderView();
-        mPullBeginY = y;
     }
 
-    void onPull(View view, float y) {
+    void onPull(float percentagePulled) {
         if (DEBUG) {
             Log.d(LOG_TAG, "onPull");
         }
 
-        final float pxScrollForRefresh = getScrollNeededForRefresh(view);
-        final float scrollLength = y - mPullBeginY;
-
-        if (scrollLength < pxScrollForRefresh) {
-            mHeaderTransformer.onPulled(scrollLength / pxScrollForRefresh);
-        } else {
-            if (mRefreshOnUp) {
-                mHeaderTransformer.onReleaseToRefresh();
-            } else {
-                setRefreshingInt(view, true, true);
+        if (mFrameAlignedPull) {
+            // Only keep the latest pull, it is applied on the next frame
+            mPendingPullFraction = percentagePulled;
+            if (!mPullUpdatePosted) {
+                mPullUpdatePosted = true;
+                Compat.postOnAnimation(mHeaderView, mPullUpdateRunnable);
             }
+        } else {
+            mHeaderTransformer.onPulled(mPullState, percentagePulled,
+                    mGestureEngine.getVelocityY(), mGestureEngine.getAccelerationY());
+        }
+    }
+
+    private void flushPendingPull() {
+        if (mPullUpdatePosted) {
+            cancelPendingPull();
+            mHeaderTransformer.onPulled(mPullState, mPendingPullFraction,
+                    mGestureEngine.getVelocityY(), mGestureEngine.getAccelerationY());
+        }
+    }
+
+    private void cancelPendingPull() {
+        if (mPullUpdatePosted) {
+            mPullUpdatePosted = false;
+            mHeaderView.removeCallbacks(mPullUpdateRunnable);
         }
     }
 
@@ -449,6 +631,7 @@ public class PullMenuAttacher {
     }
 
     void showHeaderView() {
+        ensureHeaderViewLaidOut();
         updateHeaderViewPosition(mHeaderView);
         if (mHeaderTransformer.showHeaderView()) {
             if (mHeaderViewListener != null) {
@@ -459,6 +642,8 @@ public class PullMenuAttacher {
     }
 
     void hideHeaderView() {
+        if (mHeaderView == null) return;
+
         if (mHeaderTransformer.hideHeaderView()) {
             if (mHeaderViewListener != null) {
                 mHeaderViewListener.onStateChanged(mHeaderView,
@@ -467,19 +652,41 @@ public class PullMenuAttacher {
         }
     }
     
+    /**
+     * The show animation starts from the height of the header, so a header which was only just
+     * created is measured and laid out now, instead of waiting a frame for the first traversal of
+     * its window.
+     */
+    private void ensureHeaderViewLaidOut() {
+        if (mHeaderView.getHeight() > 0) return;
+
+        final int width = mActivity.getWindow().getDecorView().getWidth();
+        int heightSpec = View.MeasureSpec.makeMeasureSpec(0, View.MeasureSpec.UNSPECIFIED);
+        if (mHeaderView.getTag() instanceof WindowManager.LayoutParams) {
+            final int height = ((WindowManager.LayoutParams) mHeaderView.getTag()).height;
+            if (height >= 0) {
+                heightSpec = View.MeasureSpec.makeMeasureSpec(height, View.MeasureSpec.EXACTLY);
+            }
+        }
+        mHeaderView.measure(View.MeasureSpec.makeMeasureSpec(width, View.MeasureSpec.EXACTLY),
+                heightSpec);
+        mHeaderView.layout(0, 0, mHeaderView.getMeasuredWidth(), mHeaderView.getMeasuredHeight());
+    }
+
+    /**
+     * The gesture engine decides which menu item the pull selects, its position table is the
+     * menu indicator's, so the header shows the same item.
+     */
     private boolean checkIfMenuActionAvailable(){
-    	if(!mIsRefreshing && mIsBeingDragged && 
-    			DefaultHeaderTransformer.scrollPercantage > DefaultHeaderTransformer.MENU_INDICATOR_MIN_VALUE && 
-    			DefaultHeaderTransformer.scrollPercantage < 100){
-    		return true;
-    	}
-    	return false;
+    	return !mIsRefreshing && mGestureEngine.isBeingDragged()
+    			&& mGestureEngine.getSelectedMenuIndex() != MenuPositionMapper.NO_POSITION;
     }
     
     /**
      * */
     private boolean triggerMenuAction(){
     	if(checkIfMenuActionAvailable()){
+    		final int selectedMenuIndex = mGestureEngine.getSelectedMenuIndex();
     		if (mOnRefreshListener != null) {
                 if (isDestroyed() || mIsRefreshing) return false;
 
@@ -489,9 +696,9 @@ public class PullMenuAttacher {
                      // Update isRefreshing state
                      mIsRefreshing = true;
 
-                    mOnRefreshListener.onRefreshStarted(null, mMenuSlidingTabStrip.getSelectedPosition(),
-                            mMenuSlidingTabStrip.getSelectedField());
-                    mMenuSlidingTabStrip.reorderArray();
+                    mOnRefreshListener.onRefreshStarted(null, selectedMenuIndex,
+                            mMenuSlidingTabStrip.getField(selectedMenuIndex));
+                    mMenuSlidingTabStrip.reorderArray(selectedMenuIndex);
 
                     // Call Transformer
                     mHeaderTransformer.onRefreshStarted();
@@ -502,9 +709,9 @@ public class PullMenuAttacher {
                     // Post a runnable to minimize the refresh header
                     if (mRefreshMinimize) {
                         if (mRefreshMinimizeDelay > 0) {
-                            getHeaderView().postDelayed(mRefreshMinimizeRunnable, mRefreshMinimizeDelay);
+                            mHeaderView.postDelayed(mRefreshMinimizeRunnable, mRefreshMinimizeDelay);
                         } else {
-                            getHeaderView().post(mRefreshMinimizeRunnable);
+                            mHeaderView.post(mRefreshMinimizeRunnable);
                         }
                     }
                     return true;
@@ -525,38 +732,13 @@ public class PullMenuAttacher {
     }
 
     protected EnvironmentDelegate createDefaultEnvironmentDelegate() {
-        return new EnvironmentDelegate() {
-            @Override
-            public Context getContextForInflater(Activity activity) {
-                Context context = null;
-                if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.ICE_CREAM_SANDWICH) {
-                    ActionBar ab = activity.getActionBar();
-                    if (ab != null) {
-                        context = ab.getThemedContext();
-                    }
-                }
-                if (context == null) {
-                    context = activity;
-                }
-                return context;
-            }
-        };
+        return new DefaultEnvironmentDelegate();
     }
 
     protected HeaderTransformer createDefaultHeaderTransformer() {
         return new DefaultHeaderTransformer();
     }
 
-    private boolean checkScrollForRefresh(View view) {
-        if (mIsBeingDragged && mRefreshOnUp && view != null) {
-            if (mLastMotionY - mPullBeginY >= getScrollNeededForRefresh(view)) {
-                setRefreshingInt(view, true, true);
-                return true;
-            }
-        }
-        return false;
-    }
-
     private void setRefreshingInt(View view, boolean refreshing, boolean fromTouch) {
         if (isDestroyed()) return;
 
@@ -593,8 +775,8 @@ public class PullMenuAttacher {
         mIsRefreshing = false;
 
         // Remove any minimize callbacks
-        if (mRefreshMinimize) {
-            getHeaderView().removeCallbacks(mRefreshMinimizeRunnable);
+        if (mRefreshMinimize && mHeaderView != null) {
+            mHeaderView.removeCallbacks(mRefreshMinimizeRunnable);
         }
 
         // Hide Header View
@@ -602,6 +784,9 @@ public class PullMenuAttacher {
     }
 
     private void startRefresh(View view, boolean fromTouch) {
+        // Refreshing without a pull, so a lazy header may not have been created yet
+        ensureHeaderView();
+
         // Update isRefreshing state
         mIsRefreshing = true;
 
@@ -621,9 +806,9 @@ public class PullMenuAttacher {
         // Post a runnable to minimize the refresh header
         if (mRefreshMinimize) {
             if (mRefreshMinimizeDelay > 0) {
-                getHeaderView().postDelayed(mRefreshMinimizeRunnable, mRefreshMinimizeDelay);
+                mHeaderView.postDelayed(mRefreshMinimizeRunnable, mRefreshMinimizeDelay);
             } else {
-                getHeaderView().post(mRefreshMinimizeRunnable);
+                mHeaderView.post(mRefreshMinimizeRunnable);
             }
         }
     }
@@ -687,6 +872,17 @@ public class PullMenuAttacher {
         }
     }
 
+    private final Runnable mPullUpdateRunnable = new Runnable() {
+        @Override
+        public void run() {
+            if (mPullUpdatePosted && !isDestroyed()) {
+                mPullUpdatePosted = false;
+                mHeaderTransformer.onPulled(mPullState, mPendingPullFraction,
+                    mGestureEngine.getVelocityY(), mGestureEngine.getAccelerationY());
+            }
+        }
+    };
+
     private final Runnable mRefreshMinimizeRunnable = new Runnable() {
         @Override
         public void run() {
@@ -694,6 +890,23 @@ public class PullMenuAttacher {
         }
     };
 
+    static final class DefaultEnvironmentDelegate implements EnvironmentDelegate {
+        @Override
+        public Context getContextForInflater(Activity activity) {
+            Context context = null;
+            if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.ICE_CREAM_SANDWICH) {
+                ActionBar ab = activity.getActionBar();
+                if (ab != null) {
+                    context = ab.getThemedContext();
+                }
+            }
+            if (context == null) {
+                context = activity;
+            }
+            return context;
+        }
+    }
+
     private class AddHeaderViewRunnable implements Runnable {
         @Override
         public void run() {
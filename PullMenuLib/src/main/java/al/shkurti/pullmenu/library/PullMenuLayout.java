@@ -5,10 +5,12 @@ import java.util.ArrayList;
 import al.shkurti.pullmenu.R;
 import al.shkurti.pullmenu.library.listeners.HeaderViewListener;
 import al.shkurti.pullmenu.library.viewdelegates.ViewDelegate;
+import android.annotation.TargetApi;
 import android.app.Activity;
 import android.content.Context;
 import android.content.res.Configuration;
 import android.content.res.TypedArray;
+import android.os.Build;
 import android.text.TextUtils;
 import android.util.AttributeSet;
 import android.util.Log;
@@ -27,6 +29,10 @@ public class PullMenuLayout extends FrameLayout {
     private static final String LOG_TAG = "PullMenuLayout";
 
     private PullMenuAttacher mPullToRefreshAttacher;
+    // A set up started with ActionBarPullMenu.SetupWizard#setupAsync which has not finished yet
+    private ActionBarPullMenu.PendingSetup mPendingSetup;
+    // The header inflated by that set up, only set while its attacher is created
+    private View mInflatedHeaderView;
 
     public PullMenuLayout(Context context) {
         this(context, null);
@@ -42,12 +48,18 @@ public class PullMenuLayout extends FrameLayout {
 
     /**
      * Manually set this Attacher's refreshing state. The header will be
-     * displayed or hidden as requested.
+     * displayed or hidden as requested. While a set up started with
+     * {@link ActionBarPullMenu.SetupWizard#setupAsync} is pending, the state is applied once
+     * it has finished.
      *
      * @param refreshing
      *            - Whether the attacher should be in a refreshing state,
      */
     public final void setRefreshing(boolean refreshing) {
+        if (mPendingSetup != null) {
+            mPendingSetup.mRefreshing = refreshing;
+            return;
+        }
         ensureAttacher();
         mPullToRefreshAttacher.setRefreshing(refreshing);
     }
@@ -56,6 +68,9 @@ public class PullMenuLayout extends FrameLayout {
      * @return true if this Attacher is currently in a refreshing state.
      */
     public final boolean isRefreshing() {
+        if (mPendingSetup != null) {
+            return mPendingSetup.mRefreshing;
+        }
         ensureAttacher();
         return mPullToRefreshAttacher.isRefreshing();
     }
@@ -67,38 +82,67 @@ public class PullMenuLayout extends FrameLayout {
      * This is the equivalent of calling <code>setRefreshing(false)</code>.
      */
     public final void setRefreshComplete() {
+        if (mPendingSetup != null) {
+            mPendingSetup.mRefreshing = false;
+            return;
+        }
         ensureAttacher();
         mPullToRefreshAttacher.setRefreshComplete();
     }
 
     /**
      * Set a {@link al.shkurti.pullmenu.library.listeners.HeaderViewListener} which is called when the visibility
-     * state of the Header View has changed.
+     * state of the Header View has changed. While a set up is pending, the listener is set once
+     * it has finished.
      *
      * @param listener
      */
     public final void setHeaderViewListener(HeaderViewListener listener) {
+        if (mPendingSetup != null) {
+            mPendingSetup.mHeaderViewListener = listener;
+            return;
+        }
         ensureAttacher();
         mPullToRefreshAttacher.setHeaderViewListener(listener);
     }
 
     /**
      * @return The Header View which is displayed when the user is pulling, or
-     *         we are refreshing.
+     *         we are refreshing. Null while a lazy header has not been created yet, see
+     *         {@link Options.Builder#lazyHeader(boolean)}, or while a set up is pending.
      */
     public final View getHeaderView() {
+        if (mPendingSetup != null) {
+            return null;
+        }
         ensureAttacher();
         return mPullToRefreshAttacher.getHeaderView();
     }
 
     /**
      * @return The HeaderTransformer currently used by this Attacher.
+     * @throws IllegalStateException if the layout has not been set up, or while a set up
+     *         started with {@link ActionBarPullMenu.SetupWizard#setupAsync} is pending.
      */
     public HeaderTransformer getHeaderTransformer() {
         ensureAttacher();
         return mPullToRefreshAttacher.getHeaderTransformer();
     }
 
+    /**
+     * Call this after pullable views have been moved without a layout pass or a scroll, for
+     * example with a translation or an animation, so that the next touch finds them where they
+     * are now.
+     */
+    public final void invalidatePullableViews() {
+        if (mPendingSetup != null) {
+            // The new attacher reads where the views are on the first touch anyway
+            return;
+        }
+        ensureAttacher();
+        mPullToRefreshAttacher.invalidateRefreshableViews();
+    }
+
 
     @Override
     public final boolean onInterceptTouchEvent(MotionEvent event) {
@@ -122,6 +166,53 @@ public class PullMenuLayout extends FrameLayout {
         return super.onTouchEvent(event);
     }
 
+    /*
+     * Nested scrolling, only dispatched on Lollipop and above. Children which support it report
+     * their unconsumed scroll, which is used as the pull distance, and the ACTION_DOWN hit-test
+     * in onInterceptTouchEvent skips them. On older platforms, or for children which don't
+     * support it, the pull is detected in onInterceptTouchEvent instead.
+     */
+
+    @TargetApi(Build.VERSION_CODES.LOLLIPOP)
+    @Override
+    public boolean onStartNestedScroll(View child, View target, int nestedScrollAxes) {
+        return isEnabled() && mPullToRefreshAttacher != null
+                && (nestedScrollAxes & SCROLL_AXIS_VERTICAL) != 0
+                && mPullToRefreshAttacher.onStartNestedScroll(target);
+    }
+
+    @TargetApi(Build.VERSION_CODES.LOLLIPOP)
+    @Override
+    public void onNestedPreScroll(View target, int dx, int dy, int[] consumed) {
+        if (mPullToRefreshAttacher != null) {
+            consumed[1] = mPullToRefreshAttacher.onNestedPreScroll(dy);
+        }
+    }
+
+    @TargetApi(Build.VERSION_CODES.LOLLIPOP)
+    @Override
+    public void onNestedScroll(View target, int dxConsumed, int dyConsumed, int dxUnconsumed,
+            int dyUnconsumed) {
+        if (mPullToRefreshAttacher != null) {
+            mPullToRefreshAttacher.onNestedScroll(dyUnconsumed);
+        }
+    }
+
+    @TargetApi(Build.VERSION_CODES.LOLLIPOP)
+    @Override
+    public boolean onNestedPreFling(View target, float velocityX, float velocityY) {
+        return mPullToRefreshAttacher != null && mPullToRefreshAttacher.onNestedPreFling();
+    }
+
+    @TargetApi(Build.VERSION_CODES.LOLLIPOP)
+    @Override
+    public void onStopNestedScroll(View target) {
+        if (mPullToRefreshAttacher != null) {
+            mPullToRefreshAttacher.onStopNestedScroll();
+        }
+        super.onStopNestedScroll(target);
+    }
+
     @Override
     public FrameLayout.LayoutParams generateLayoutParams(AttributeSet attrs) {
         return new LayoutParams(getContext(), attrs);
@@ -129,6 +220,7 @@ public class PullMenuLayout extends FrameLayout {
 
     @Override
     protected void onDetachedFromWindow() {
+        cancelPendingSetup();
         // Destroy the PullMenuAttacher
         if (mPullToRefreshAttacher != null) {
             mPullToRefreshAttacher.destroy();
@@ -145,12 +237,39 @@ public class PullMenuLayout extends FrameLayout {
     }
 
     void setPullMenuAttacher(PullMenuAttacher attacher) {
+        // A set up which is still waiting for its header would replace this one
+        cancelPendingSetup();
         if (mPullToRefreshAttacher != null) {
             mPullToRefreshAttacher.destroy();
         }
         mPullToRefreshAttacher = attacher;
     }
 
+    void setPendingSetup(ActionBarPullMenu.PendingSetup pendingSetup) {
+        cancelPendingSetup();
+        mPendingSetup = pendingSetup;
+    }
+
+    /**
+     * @return the pending set up run by {@code task}, which is no longer pending, or null if it
+     *         has been cancelled or replaced.
+     */
+    ActionBarPullMenu.PendingSetup takePendingSetup(ActionBarPullMenu.HeaderInflateTask task) {
+        final ActionBarPullMenu.PendingSetup pendingSetup = mPendingSetup;
+        if (pendingSetup == null || pendingSetup.mTask != task) {
+            return null;
+        }
+        mPendingSetup = null;
+        return pendingSetup;
+    }
+
+    private void cancelPendingSetup() {
+        if (mPendingSetup != null) {
+            mPendingSetup.cancel();
+            mPendingSetup = null;
+        }
+    }
+
     void addAllChildrenAsPullable() {
         ensureAttacher();
         for (int i = 0, z = getChildCount(); i < z; i++) {
@@ -203,7 +322,27 @@ public class PullMenuLayout extends FrameLayout {
     protected PullMenuAttacher createPullToRefreshAttacher(Activity activity,
             Options options,int textColor,  int backgroundColor, int progresBarColor, ArrayList<String> mItems) {
         return new PullMenuAttacher(activity, options != null ? options : new Options(),
-                textColor, backgroundColor, progresBarColor, mItems);
+                textColor, backgroundColor, progresBarColor, mItems, mInflatedHeaderView);
+    }
+
+    /**
+     * Create the attacher with {@link #createPullToRefreshAttacher(Activity, Options, int, int,
+     * int, ArrayList)}, so that subclasses still create their own attachers. The default attacher
+     * uses {@code headerView}, an attacher created by a subclass inflates its own header.
+     *
+     * @param headerView a header which has already been inflated, or null to inflate it in the
+     *            attacher.
+     */
+    final PullMenuAttacher createPullToRefreshAttacher(Activity activity, Options options,
+            int textColor, int backgroundColor, int progresBarColor, ArrayList<String> mItems,
+            View headerView) {
+        mInflatedHeaderView = headerView;
+        try {
+            return createPullToRefreshAttacher(activity, options, textColor, backgroundColor,
+                    progresBarColor, mItems);
+        } finally {
+            mInflatedHeaderView = null;
+        }
     }
 
     private void ensureAttacher() {
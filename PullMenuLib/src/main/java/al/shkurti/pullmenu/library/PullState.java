@@ -0,0 +1,32 @@
+package al.shkurti.pullmenu.library;
+
+/**
+ * The progress of the pull of one {@link PullMenuAttacher}. Every attacher has its own, so that
+ * pull menus which are alive at the same time do not affect each other. It is handed to the
+ * {@link HeaderTransformer}, which records the progress it displays. Which menu item the pull
+ * selects is decided by the attacher's gesture engine, from the same pull.
+ */
+public final class PullState {
+
+    private int mProgress;
+
+    PullState() {}
+
+    /**
+     * @return the progress of the pull as displayed, from 0 to 100.
+     */
+    public int getProgress() {
+        return mProgress;
+    }
+
+    /**
+     * @param progress the progress of the pull as displayed, from 0 to 100.
+     */
+    public void setProgress(int progress) {
+        mProgress = progress;
+    }
+
+    void reset() {
+        mProgress = 0;
+    }
+}
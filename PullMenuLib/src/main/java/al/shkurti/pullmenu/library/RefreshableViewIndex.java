@@ -0,0 +1,434 @@
+package al.shkurti.pullmenu.library;
+
+import java.lang.ref.WeakReference;
+import java.util.Arrays;
+
+import al.shkurti.pullmenu.library.sdk.Compat;
+import al.shkurti.pullmenu.library.viewdelegates.ViewDelegate;
+import android.annotation.SuppressLint;
+import android.os.Build;
+import android.view.View;
+import android.view.ViewTreeObserver;
+
+/**
+ * Holds the refreshable views and their {@link ViewDelegate}s in parallel arrays, so that touch
+ * dispatch does not allocate iterators or expunge stale map entries. Views are weakly referenced
+ * and the entries of collected views are compacted away when the rects are re-read.
+ * <p/>
+ * The screen is cut into horizontal bands at every top and bottom edge of the views' screen
+ * rects, and the bands are the leaves of a segment tree. Each view is stored in the O(log n) tree
+ * nodes which together cover its bands, so building the tree is O(n log n). Finding the views
+ * under an ACTION_DOWN is a binary search for the band followed by a walk from its leaf to the
+ * root, so the cost is O(log n + k) where k is the number of views overlapping at that height.
+ * Only the delegates of views which contain the touch point are called. Views which report their
+ * scroll with nested scrolling are left out, they are pulled through the nested scrolling
+ * callbacks of the layout instead.
+ * <p/>
+ * When views overlap, the most recently registered view which is ready for a pull wins. This
+ * matches registering a parent before the children which are nested in it. The entries are kept
+ * in registration order, re-registering a view only replaces its delegate.
+ * <p/>
+ * The rects are re-read on every layout pass of the window, and the tree is only rebuilt when one
+ * of them moved. A scroll can move views without a layout pass, so it only marks the index as
+ * possibly moved: the next hit-test re-reads the rects of the views under the touch point, and
+ * only re-reads every rect if one of those moved. Translations and animations are not seen by
+ * either, {@link #invalidate()} has to be called after them.
+ */
+class RefreshableViewIndex implements ViewTreeObserver.OnGlobalLayoutListener,
+        ViewTreeObserver.OnScrollChangedListener {
+
+    private static final int INITIAL_CAPACITY = 4;
+
+    private WeakReference<View>[] mViews;
+    private ViewDelegate[] mDelegates;
+    private int[] mLefts, mTops, mRights, mBottoms;
+    private int mSize;
+
+    // mEdges[0..mEdgeCount) are the sorted, distinct top and bottom edges, band b spans
+    // [mEdges[b], mEdges[b + 1]). The segment tree is stored as a heap with the leaf of band b at
+    // mLeafCount + b, node n holds the views mNodeViews[mNodeStarts[n]..mNodeStarts[n + 1])
+    private int[] mEdges;
+    private int mEdgeCount;
+    private int mLeafCount;
+    private int[] mNodeStarts = new int[INITIAL_CAPACITY];
+    private int[] mNodeViews = new int[INITIAL_CAPACITY];
+
+    // The views under the touch point, most recently registered first
+    private int[] mHits;
+    private int mHitCount;
+
+    private boolean mStale = true, mMaybeMoved;
+    private View mObservedView;
+
+    private final int[] mLocation = new int[2];
+
+    RefreshableViewIndex() {
+        allocate(INITIAL_CAPACITY);
+    }
+
+    @SuppressWarnings("unchecked")
+    private void allocate(int capacity) {
+        final WeakReference<View>[] views = new WeakReference[capacity];
+        final ViewDelegate[] delegates = new ViewDelegate[capacity];
+        final int[] lefts = new int[capacity], tops = new int[capacity];
+        final int[] rights = new int[capacity], bottoms = new int[capacity];
+        if (mViews != null) {
+            System.arraycopy(mViews, 0, views, 0, mSize);
+            System.arraycopy(mDelegates, 0, delegates, 0, mSize);
+            System.arraycopy(mLefts, 0, lefts, 0, mSize);
+            System.arraycopy(mTops, 0, tops, 0, mSize);
+            System.arraycopy(mRights, 0, rights, 0, mSize);
+            System.arraycopy(mBottoms, 0, bottoms, 0, mSize);
+        }
+        mViews = views;
+        mDelegates = delegates;
+        mLefts = lefts;
+        mTops = tops;
+        mRights = rights;
+        mBottoms = bottoms;
+        mEdges = new int[capacity * 2];
+        mHits = new int[capacity];
+        mEdgeCount = 0;
+    }
+
+    /**
+     * Start listening to the layout passes and scrolls of the window which {@code view} is in.
+     */
+    void attach(View view) {
+        mObservedView = view;
+        final ViewTreeObserver observer = view.getViewTreeObserver();
+        observer.addOnGlobalLayoutListener(this);
+        observer.addOnScrollChangedListener(this);
+    }
+
+    @SuppressWarnings("deprecation")
+    @SuppressLint("NewApi")
+    void detach() {
+        if (mObservedView == null) return;
+
+        final ViewTreeObserver observer = mObservedView.getViewTreeObserver();
+        if (observer.isAlive()) {
+            if (Build.VERSION.SDK_INT < Build.VERSION_CODES.JELLY_BEAN) {
+                observer.removeGlobalOnLayoutListener(this);
+            } else {
+                observer.removeOnGlobalLayoutListener(this);
+            }
+            observer.removeOnScrollChangedListener(this);
+        }
+        mObservedView = null;
+    }
+
+    /**
+     * Add a view, or replace the delegate of a view which has already been added.
+     */
+    void put(View view, ViewDelegate delegate) {
+        for (int i = 0; i < mSize; i++) {
+            if (mViews[i].get() == view) {
+                mDelegates[i] = delegate;
+                return;
+            }
+        }
+        if (mSize == mViews.length) {
+            // Try to make room by dropping collected views before growing the arrays
+            compact();
+            if (mSize == mViews.length) {
+                allocate(mSize * 2);
+            }
+        }
+        mViews[mSize] = new WeakReference<View>(view);
+        mDelegates[mSize] = delegate;
+        mSize++;
+        mStale = true;
+    }
+
+    boolean contains(View view) {
+        for (int i = 0; i < mSize; i++) {
+            if (mViews[i].get() == view) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Set {@code delegate} on every view which is an instance of {@code viewClass}.
+     */
+    void useViewDelegate(Class<?> viewClass, ViewDelegate delegate) {
+        for (int i = 0; i < mSize; i++) {
+            if (viewClass.isInstance(mViews[i].get())) {
+                mDelegates[i] = delegate;
+            }
+        }
+    }
+
+    void clear() {
+        for (int i = 0; i < mSize; i++) {
+            mViews[i] = null;
+            mDelegates[i] = null;
+        }
+        mSize = 0;
+        mEdgeCount = 0;
+    }
+
+    /**
+     * Drop the entries of views which have been garbage collected. The tree refers to the entries
+     * by index, so it has to be rebuilt afterwards.
+     */
+    private void compact() {
+        int size = 0;
+        for (int i = 0; i < mSize; i++) {
+            if (mViews[i].get() == null) continue;
+            if (size != i) {
+                mViews[size] = mViews[i];
+                mDelegates[size] = mDelegates[i];
+                mLefts[size] = mLefts[i];
+                mTops[size] = mTops[i];
+                mRights[size] = mRights[i];
+                mBottoms[size] = mBottoms[i];
+            }
+            size++;
+        }
+        for (int i = size; i < mSize; i++) {
+            mViews[i] = null;
+            mDelegates[i] = null;
+        }
+        if (size != mSize) {
+            mSize = size;
+            mStale = true;
+        }
+    }
+
+    @Override
+    public void onGlobalLayout() {
+        update();
+    }
+
+    @Override
+    public void onScrollChanged() {
+        mMaybeMoved = true;
+    }
+
+    /**
+     * Re-read every rect on the next hit-test. Call this after views have been moved without a
+     * layout pass or a scroll, for example by a translation or an animation.
+     */
+    void invalidate() {
+        mStale = true;
+    }
+
+    /**
+     * @return the refreshable view under the given screen co-ordinates which is ready to be
+     *         pulled, or null.
+     */
+    View findViewReadyForPull(int rawX, int rawY) {
+        if (mStale) {
+            update();
+        }
+
+        if (mMaybeMoved) {
+            // Only the views under the touch point are checked, unless one of them moved
+            mMaybeMoved = false;
+            if (candidatesMoved(rawX, rawY)) {
+                update();
+            }
+        }
+
+        collectHits(rawX, rawY, true);
+        for (int h = 0; h < mHitCount; h++) {
+            final int i = mHits[h];
+            final View view = mViews[i].get();
+            if (view != null && view.isShown() && !Compat.isNestedScrollingEnabled(view)) {
+                final ViewDelegate delegate = mDelegates[i];
+                // Now call the delegate, converting the X/Y into the View's co-ordinate system
+                if (delegate != null
+                        && delegate.isReadyForPull(view, rawX - mLefts[i], rawY - mTops[i])) {
+                    return view;
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * @return the index of the band which contains {@code rawY}, or -1.
+     */
+    private int findBand(int rawY) {
+        int low = 0, high = mEdgeCount - 1;
+        while (low <= high) {
+            final int mid = (low + high) >>> 1;
+            if (mEdges[mid] <= rawY) {
+                low = mid + 1;
+            } else {
+                high = mid - 1;
+            }
+        }
+        // The last edge only closes the band before it
+        return high < mEdgeCount - 1 ? high : -1;
+    }
+
+    /**
+     * Fill {@link #mHits} with the views whose rects cover {@code rawY}, and {@code rawX} too if
+     * {@code matchX} is set, most recently registered first.
+     */
+    private void collectHits(int rawX, int rawY, boolean matchX) {
+        mHitCount = 0;
+        final int band = findBand(rawY);
+        if (band < 0) return;
+
+        // A view covers the band if it is stored in one of the nodes from the leaf up to the root
+        for (int node = mLeafCount + band; node > 0; node >>>= 1) {
+            for (int n = mNodeStarts[node], end = mNodeStarts[node + 1]; n < end; n++) {
+                final int i = mNodeViews[n];
+                if (matchX && (rawX < mLefts[i] || mRights[i] <= rawX)) continue;
+
+                // Insertion sort, k is small
+                int h = mHitCount++;
+                while (h > 0 && mHits[h - 1] < i) {
+                    mHits[h] = mHits[h - 1];
+                    h--;
+                }
+                mHits[h] = i;
+            }
+        }
+    }
+
+    /**
+     * @return true if one of the views indexed under {@code rawY} is no longer where its rect
+     *         says it is.
+     */
+    private boolean candidatesMoved(int rawX, int rawY) {
+        collectHits(rawX, rawY, false);
+        for (int h = 0; h < mHitCount; h++) {
+            final int i = mHits[h];
+            final View view = mViews[i].get();
+            if (view == null) return true;
+
+            view.getLocationOnScreen(mLocation);
+            if (mLocation[0] != mLefts[i] || mLocation[1] != mTops[i]
+                    || mLocation[0] + view.getWidth() != mRights[i]
+                    || mLocation[1] + view.getHeight() != mBottoms[i]) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Re-reads the screen rects of the views and rebuilds the tree if any of them moved.
+     */
+    private void update() {
+        mMaybeMoved = false;
+
+        compact();
+        boolean moved = mStale;
+        mStale = false;
+        for (int i = 0; i < mSize; i++) {
+            final View view = mViews[i].get();
+            if (view == null) {
+                // Collected since the compaction, it will be dropped on the next update
+                continue;
+            }
+            view.getLocationOnScreen(mLocation);
+            final int left = mLocation[0], top = mLocation[1];
+            final int right = left + view.getWidth(), bottom = top + view.getHeight();
+            if (left != mLefts[i] || top != mTops[i] || right != mRights[i] || bottom != mBottoms[i]) {
+                mLefts[i] = left;
+                mTops[i] = top;
+                mRights[i] = right;
+                mBottoms[i] = bottom;
+                moved = true;
+            }
+        }
+
+        if (moved) {
+            buildTree();
+        }
+    }
+
+    private void buildTree() {
+        int edgeCount = 0;
+        for (int i = 0; i < mSize; i++) {
+            if (mTops[i] < mBottoms[i]) {
+                mEdges[edgeCount++] = mTops[i];
+                mEdges[edgeCount++] = mBottoms[i];
+            }
+        }
+        Arrays.sort(mEdges, 0, edgeCount);
+        int distinct = 0;
+        for (int e = 0; e < edgeCount; e++) {
+            if (distinct == 0 || mEdges[distinct - 1] != mEdges[e]) {
+                mEdges[distinct++] = mEdges[e];
+            }
+        }
+        mEdgeCount = distinct;
+
+        int leafCount = 1;
+        while (leafCount < distinct - 1) {
+            leafCount <<= 1;
+        }
+        mLeafCount = leafCount;
+        final int nodeCount = leafCount * 2;
+        if (mNodeStarts.length < nodeCount + 1) {
+            mNodeStarts = new int[nodeCount + 1];
+        } else {
+            Arrays.fill(mNodeStarts, 0, nodeCount + 1, 0);
+        }
+
+        // Count the views of each node first, then fill them in, so that the nodes can share
+        // one array
+        int total = 0;
+        for (int i = 0; i < mSize; i++) {
+            total += addToNodes(i, false);
+        }
+        for (int node = 1; node <= nodeCount; node++) {
+            mNodeStarts[node] += mNodeStarts[node - 1];
+        }
+        if (mNodeViews.length < total) {
+            mNodeViews = new int[total];
+        }
+        for (int i = 0; i < mSize; i++) {
+            addToNodes(i, true);
+        }
+        // Filling moved every start up to the start of the next node
+        for (int node = nodeCount; node > 0; node--) {
+            mNodeStarts[node] = mNodeStarts[node - 1];
+        }
+        mNodeStarts[0] = 0;
+    }
+
+    /**
+     * Walk the nodes which together cover the bands of view {@code i}. When counting, the views
+     * of node n are counted in mNodeStarts[n + 1]. When filling, mNodeStarts[n] is the next free
+     * slot of node n.
+     *
+     * @return the number of nodes.
+     */
+    private int addToNodes(int i, boolean fill) {
+        if (mTops[i] >= mBottoms[i]) return 0;
+
+        int count = 0;
+        int low = Arrays.binarySearch(mEdges, 0, mEdgeCount, mTops[i]) + mLeafCount;
+        int high = Arrays.binarySearch(mEdges, 0, mEdgeCount, mBottoms[i]) + mLeafCount;
+        while (low < high) {
+            if ((low & 1) != 0) {
+                addToNode(low++, i, fill);
+                count++;
+            }
+            if ((high & 1) != 0) {
+                addToNode(--high, i, fill);
+                count++;
+            }
+            low >>>= 1;
+            high >>>= 1;
+        }
+        return count;
+    }
+
+    private void addToNode(int node, int i, boolean fill) {
+        if (fill) {
+            mNodeViews[mNodeStarts[node]++] = i;
+        } else {
+            mNodeStarts[node + 1]++;
+        }
+    }
+}
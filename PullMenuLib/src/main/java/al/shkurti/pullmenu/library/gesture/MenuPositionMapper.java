@@ -0,0 +1,218 @@
+package al.shkurti.pullmenu.library.gesture;
+
+/**
+ * Maps how far the user has pulled (as a percentage from 0 to 100) to the menu item which should
+ * be selected. This class has no Android dependencies so that it can be exercised on a plain JVM.
+ * <p/>
+ * The mapping for a menu is built once into a table with an entry per percentage, see
+ * {@link #fillTable(byte[], int, float[])}, so that mapping a pull is a single array load.
+ */
+public final class MenuPositionMapper {
+
+    /**
+     * Percentages at or below this value do not select any menu item.
+     */
+    public static final int MENU_INDICATOR_MIN_VALUE = 6;
+
+    /**
+     * Returned when the given percentage does not select any menu item.
+     */
+    public static final int NO_POSITION = -1;
+
+    /**
+     * Size of the tables filled by {@link #fillTable(byte[], int, float[])}, one entry for every
+     * percentage from 0 to 100.
+     */
+    public static final int TABLE_SIZE = 101;
+
+    /**
+     * The largest number of items a table can hold, the entries are bytes.
+     */
+    public static final int MAX_ITEM_COUNT = Byte.MAX_VALUE + 1;
+
+    private MenuPositionMapper() {}
+
+    /**
+     * Fill {@code table} with the menu item for every percentage.
+     *
+     * @param table array of at least {@link #TABLE_SIZE} entries
+     * @param itemCount number of items in the pull menu, items above {@link #MAX_ITEM_COUNT} can
+     *        never be selected
+     * @param weights relative size of the zone of each menu item, or null to use the default
+     *        zones. Must have at least {@code itemCount} entries, all positive.
+     */
+    public static void fillTable(byte[] table, int itemCount, float[] weights) {
+        if (table.length < TABLE_SIZE) {
+            throw new IllegalArgumentException("table must have " + TABLE_SIZE + " entries");
+        }
+        itemCount = Math.min(itemCount, MAX_ITEM_COUNT);
+
+        if (weights == null || itemCount <= 0) {
+            for (int i = 0; i < TABLE_SIZE; i++) {
+                table[i] = (byte) getPosition(itemCount, i);
+            }
+            return;
+        }
+
+        if (weights.length < itemCount) {
+            throw new IllegalArgumentException("weights must have an entry for every item");
+        }
+        float total = 0f;
+        for (int i = 0; i < itemCount; i++) {
+            if (!(weights[i] > 0f)) {
+                throw new IllegalArgumentException("weights must be positive");
+            }
+            total += weights[i];
+        }
+
+        // Split the selectable percentages into zones sized by the weights
+        final float range = 100 - MENU_INDICATOR_MIN_VALUE;
+        int index = 0;
+        float zoneEnd = MENU_INDICATOR_MIN_VALUE + weights[0] / total * range;
+        for (int i = 0; i < TABLE_SIZE; i++) {
+            if (i <= MENU_INDICATOR_MIN_VALUE || i >= 100) {
+                table[i] = NO_POSITION;
+                continue;
+            }
+            while (i >= zoneEnd && index < itemCount - 1) {
+                index++;
+                zoneEnd += weights[index] / total * range;
+            }
+            table[i] = (byte) index;
+        }
+    }
+
+    /**
+     * @param table a table filled by {@link #fillTable(byte[], int, float[])}
+     * @param percentage value from 0 to 100 depending on how far the user has pulled
+     * @return the index of the selected menu item or {@link #NO_POSITION}
+     */
+    public static int lookup(byte[] table, int percentage) {
+        if (percentage < 0 || percentage >= TABLE_SIZE) {
+            return NO_POSITION;
+        }
+        return table[percentage];
+    }
+
+    /**
+     * Fill {@code centres} with the percentage at the centre of the zone of each menu item, used
+     * to move the menu indicator continuously between the items.
+     *
+     * @param table a table filled by {@link #fillTable(byte[], int, float[])}
+     * @param itemCount number of items in the pull menu
+     * @param centres array of at least {@code itemCount} entries
+     */
+    public static void fillZoneCentres(byte[] table, int itemCount, float[] centres) {
+        for (int i = 0; i < itemCount; i++) {
+            centres[i] = -1f;
+        }
+
+        // Every zone is a run of the same item, the percentages are rounded so a run of the
+        // percentages start to end - 1 covers start - 0.5 to end - 0.5
+        int zone = NO_POSITION, start = 0;
+        for (int i = 0; i <= TABLE_SIZE; i++) {
+            final int value = i < TABLE_SIZE ? table[i] : NO_POSITION;
+            if (value != zone) {
+                if (zone >= 0 && zone < itemCount) {
+                    centres[zone] = (start + i - 1) / 2f;
+                }
+                zone = value;
+                start = i;
+            }
+        }
+
+        // Items which don't fit in the table have no zone, keep them on the last one which does
+        for (int i = 0; i < itemCount; i++) {
+            if (centres[i] < 0f) {
+                centres[i] = i > 0 ? centres[i - 1] : MENU_INDICATOR_MIN_VALUE;
+            }
+        }
+    }
+
+    /**
+     * @param centres the zone centres filled by {@link #fillZoneCentres(byte[], int, float[])}
+     * @param itemCount number of items in the pull menu
+     * @param percentage value from 0 to 100 depending on how far the user has pulled
+     * @return the position of the menu indicator, where the integer part is the item it is at
+     *         and the fraction how far it has moved to the next item, or {@link #NO_POSITION}
+     *         if there are no items.
+     */
+    public static float getFractionalPosition(float[] centres, int itemCount, float percentage) {
+        if (itemCount <= 0) {
+            return NO_POSITION;
+        }
+        if (percentage <= centres[0]) {
+            return 0f;
+        }
+        for (int i = 1; i < itemCount; i++) {
+            if (percentage < centres[i]) {
+                final float span = centres[i] - centres[i - 1];
+                return span > 0f ? i - 1 + (percentage - centres[i - 1]) / span : i;
+            }
+        }
+        return itemCount - 1;
+    }
+
+    /**
+     * The default zones. Menus of 2 to 6 items keep the zones they always had, any other number
+     * of items splits the selectable percentages evenly.
+     *
+     * @param itemCount number of items in the pull menu
+     * @param percentage value from 0 to 100 depending on how far the user has pulled
+     * @return the index of the selected menu item or {@link #NO_POSITION}
+     */
+    public static int getPosition(int itemCount, int percentage) {
+        if (percentage <= MENU_INDICATOR_MIN_VALUE || percentage >= 100) {
+            return NO_POSITION;
+        }
+        switch (itemCount) {
+            case 2:
+                return percentage < 50 ? 0 : 1;
+            case 3:
+                if (percentage < 35) return 0;
+                if (percentage < 68) return 1;
+                return 2;
+            case 4:
+                if (percentage < 27) return 0;
+                if (percentage < 52) return 1;
+                if (percentage < 77) return 2;
+                return 3;
+            case 5:
+                if (percentage < 22) return 0;
+                if (percentage < 42) return 1;
+                if (percentage < 62) return 2;
+                if (percentage < 82) return 3;
+                return 4;
+            case 6:
+                if (percentage < 19) return 0;
+                if (percentage < 34) return 1;
+                if (percentage < 50) return 2;
+                if (percentage < 66) return 3;
+                if (percentage < 82) return 4;
+                return 5;
+            default:
+                if (itemCount <= 0) return NO_POSITION;
+                final int range = 100 - MENU_INDICATOR_MIN_VALUE - 1;
+                return (percentage - MENU_INDICATOR_MIN_VALUE - 1) * itemCount / range;
+        }
+    }
+
+    /**
+     * Converts the pulled fraction to the percentage used to select the menu items. The fraction
+     * is run through an accelerate curve so that the first part of the pull moves slower.
+     *
+     * @param percentagePulled value between 0.0f and 1.0f depending on how far the user has pulled
+     * @param max the value which stands for a complete pull, usually 100
+     */
+    public static int getPercentage(float percentagePulled, int max) {
+        return Math.round(getExactPercentage(percentagePulled, max));
+    }
+
+    /**
+     * The same as {@link #getPercentage(float, int)}, without rounding.
+     */
+    public static float getExactPercentage(float percentagePulled, int max) {
+        // Same curve as android.view.animation.AccelerateInterpolator with the default factor
+        return max * (percentagePulled * percentagePulled);
+    }
+}
@@ -0,0 +1,425 @@
+package al.shkurti.pullmenu.library.gesture;
+
+/**
+ * The pull gesture state machine used by {@link al.shkurti.pullmenu.library.PullMenuAttacher}.
+ * <p/>
+ * It only works with primitive values so that it has no Android dependencies and can be driven
+ * from a plain JVM, for example from unit tests or benchmarks. The attacher is responsible for
+ * hit-testing the refreshable views and for updating the header, this class decides when a pull
+ * starts, how far it has gone and what should happen when it ends.
+ */
+public final class PullGestureEngine {
+
+    /* Actions, these have the same values as the ones in android.view.MotionEvent */
+    public static final int ACTION_DOWN = 0;
+    public static final int ACTION_UP = 1;
+    public static final int ACTION_MOVE = 2;
+    public static final int ACTION_CANCEL = 3;
+
+    /* States */
+    public static final int STATE_IDLE = 0;
+    public static final int STATE_ARMED = 1;
+    public static final int STATE_DRAGGING = 2;
+
+    /* Results returned from the event methods */
+    public static final int RESULT_NONE = 0;
+    public static final int RESULT_PULL_STARTED = 1;
+    public static final int RESULT_PULLED = 2;
+    public static final int RESULT_RELEASE_TO_REFRESH = 3;
+    public static final int RESULT_REFRESH = 4;
+    public static final int RESULT_RELEASED = 5;
+    public static final int RESULT_RELEASED_REFRESH = 6;
+
+    private final float mTouchSlop;
+    private final boolean mRefreshOnUp;
+
+    private float mScrollNeededForRefresh;
+    private byte[] mMenuPositionTable;
+    private float mPredictionTime;
+    private float mMinFlingVelocity, mFlingProjectionTime;
+
+    private float mInitialMotionX, mInitialMotionY, mLastMotionY, mPullBeginY;
+    private boolean mIsBeingDragged;
+    private long mLastEventTime;
+
+    // Nested pulls are driven by scroll deltas, mNestedPullDistance is the sum of those deltas
+    private boolean mIsNestedPull;
+    private float mNestedPullDistance;
+
+    private final PullVelocityTracker mVelocityTracker = new PullVelocityTracker();
+
+    private float mPullFraction;
+    private int mPullPercentage;
+    private int mSelectedMenuIndex = MenuPositionMapper.NO_POSITION;
+    private boolean mReleaseAdjusted;
+
+    /**
+     * Largest fraction a fling can project to. It still maps to a percentage below 100, so the
+     * last menu item can be selected by a fling but a refresh can not be started by one.
+     */
+    private static final float MAX_FLING_FRACTION = 0.99f;
+
+    /**
+     * @param touchSlop distance in pixels the finger has to travel before a pull starts
+     * @param refreshOnUp whether a refresh should only be initiated when the touch ends
+     */
+    public PullGestureEngine(float touchSlop, boolean refreshOnUp) {
+        mTouchSlop = touchSlop;
+        mRefreshOnUp = refreshOnUp;
+        setMenuItemCount(0);
+        reset();
+    }
+
+    /**
+     * Set the distance in pixels which needs to be pulled before a refresh is initiated.
+     */
+    public void setScrollNeededForRefresh(float scrollNeededForRefresh) {
+        mScrollNeededForRefresh = scrollNeededForRefresh;
+    }
+
+    /**
+     * Set the number of items in the pull menu, used to compute the selected menu index with the
+     * default zones.
+     */
+    public void setMenuItemCount(int menuItemCount) {
+        mMenuPositionTable = new byte[MenuPositionMapper.TABLE_SIZE];
+        MenuPositionMapper.fillTable(mMenuPositionTable, menuItemCount, null);
+    }
+
+    /**
+     * Use a table filled by {@link MenuPositionMapper#fillTable(byte[], int, float[])} to compute
+     * the selected menu index. The table is not copied, so later changes to it are picked up.
+     */
+    public void setMenuPositionTable(byte[] table) {
+        mMenuPositionTable = table;
+    }
+
+    /**
+     * Enable pull prediction. The pull fraction, percentage and menu index are then computed
+     * from where the finger is expected to be {@code predictionTime} milliseconds after the
+     * latest event, which is usually one display frame. The refresh distance is always checked
+     * against the real position, and the real position is restored when the pull is released.
+     *
+     * @param predictionTime how far to look ahead in milliseconds, 0 to disable prediction
+     */
+    public void setPredictionTime(float predictionTime) {
+        mPredictionTime = predictionTime;
+    }
+
+    /**
+     * Enable fling to select. When the pull is released while the finger moves down faster than
+     * {@code minFlingVelocity}, the pull is projected forward as if it carried on for
+     * {@code projectionTime} milliseconds, so a short and quick gesture can select the far menu
+     * items.
+     *
+     * @param minFlingVelocity velocity in pixels per second needed for a fling
+     * @param projectionTime how far to project the fling in milliseconds, 0 to disable
+     */
+    public void setFlingToSelect(float minFlingVelocity, float projectionTime) {
+        mMinFlingVelocity = minFlingVelocity;
+        mFlingProjectionTime = projectionTime;
+    }
+
+    /**
+     * Add a sample which was batched into the next ACTION_MOVE, these are only used to estimate
+     * the velocity and acceleration of the finger. Call this, oldest first, before passing the
+     * ACTION_MOVE itself.
+     */
+    public void addHistoricalSample(float y, long eventTime) {
+        addSample(y, eventTime);
+    }
+
+    private void addSample(float y, long eventTime) {
+        if (getState() != STATE_IDLE) {
+            mVelocityTracker.addSample(y, eventTime);
+        }
+    }
+
+    /**
+     * Process an event which is seen before the children of the layout get it.
+     *
+     * @param readyForPull only used with {@link #ACTION_DOWN}, whether the event landed on a view
+     *                     which is ready to be pulled.
+     * @return {@link #RESULT_PULL_STARTED} if the pull has started with this event, otherwise
+     *         {@link #RESULT_NONE}.
+     */
+    public int onInterceptTouchEvent(int action, float x, float y, long eventTime,
+            boolean readyForPull) {
+        mLastEventTime = eventTime;
+
+        switch (action) {
+            case ACTION_MOVE: {
+                addSample(y, eventTime);
+
+                // We're not currently being dragged so check to see if the user has
+                // scrolled enough
+                if (!mIsBeingDragged && mInitialMotionY > 0f) {
+                    final float yDiff = y - mInitialMotionY;
+                    final float xDiff = x - mInitialMotionX;
+
+                    if (Math.abs(yDiff) > Math.abs(xDiff) && yDiff > mTouchSlop) {
+                        mIsBeingDragged = true;
+                        mPullBeginY = y;
+                        return RESULT_PULL_STARTED;
+                    } else if (yDiff < -mTouchSlop) {
+                        reset();
+                    }
+                }
+                break;
+            }
+
+            case ACTION_DOWN: {
+                if (readyForPull) {
+                    mInitialMotionX = x;
+                    mInitialMotionY = y;
+                    mVelocityTracker.clear();
+                    mVelocityTracker.addSample(y, eventTime);
+                }
+                break;
+            }
+
+            case ACTION_CANCEL:
+            case ACTION_UP: {
+                reset();
+                break;
+            }
+        }
+        return RESULT_NONE;
+    }
+
+    /**
+     * Process an event once the pull has been intercepted.
+     *
+     * @return {@link #RESULT_PULLED} when {@link #getPullFraction()} has been updated,
+     *         {@link #RESULT_RELEASE_TO_REFRESH} or {@link #RESULT_REFRESH} when the pull has gone
+     *         past the refresh distance, {@link #RESULT_RELEASED_REFRESH} when the pull ended past
+     *         the refresh distance and refresh on up is enabled, {@link #RESULT_RELEASED} when
+     *         any other pull ended, and {@link #RESULT_NONE} otherwise.
+     */
+    public int onTouchEvent(int action, float x, float y, long eventTime) {
+        mLastEventTime = eventTime;
+
+        if (action == ACTION_MOVE || action == ACTION_UP) {
+            addSample(y, eventTime);
+        }
+
+        switch (action) {
+            case ACTION_MOVE: {
+                if (mIsBeingDragged && y != mLastMotionY) {
+                    // If the user scrolls above the point where the pull started it would be
+                    // detected as a pull down, so ignore it
+                    if (mInitialMotionY > y) {
+                        break;
+                    }
+                    mLastMotionY = y;
+                    return onPull(y);
+                }
+                break;
+            }
+
+            case ACTION_CANCEL:
+            case ACTION_UP: {
+                if (mIsBeingDragged) {
+                    onRelease(action == ACTION_UP);
+                    return mRefreshOnUp && mLastMotionY - mPullBeginY >= mScrollNeededForRefresh
+                            ? RESULT_RELEASED_REFRESH
+                            : RESULT_RELEASED;
+                }
+                break;
+            }
+        }
+        return RESULT_NONE;
+    }
+
+    private int onPull(float y) {
+        final float scrollLength = y - mPullBeginY;
+
+        if (scrollLength < mScrollNeededForRefresh) {
+            final float predictedLength = scrollLength + getPredictedDistance();
+            // Never let the prediction reach the refresh distance, only the real pull can do that
+            updatePull(predictedLength < mScrollNeededForRefresh ? predictedLength : scrollLength);
+            return RESULT_PULLED;
+        }
+        return mRefreshOnUp ? RESULT_RELEASE_TO_REFRESH : RESULT_REFRESH;
+    }
+
+    /**
+     * Start a pull which is driven by the unconsumed scroll deltas of a nested scrolling child,
+     * instead of by touch events. The pull starts with the first delta, as the child has
+     * already checked the touch slop.
+     */
+    public void startNestedPull(long eventTime) {
+        reset();
+        mLastEventTime = eventTime;
+        mIsNestedPull = true;
+        mInitialMotionY = mPullBeginY = 0f;
+        mVelocityTracker.addSample(0f, eventTime);
+    }
+
+    /**
+     * Process a scroll delta of a nested pull.
+     *
+     * @param dy distance in pixels, positive when pulling further down
+     * @return {@link #RESULT_PULL_STARTED} for the first delta, otherwise the same results as
+     *         {@link #onTouchEvent(int, float, float, long)} returns for an ACTION_MOVE.
+     */
+    public int onNestedScroll(float dy, long eventTime) {
+        if (!mIsNestedPull) {
+            return RESULT_NONE;
+        }
+        mLastEventTime = eventTime;
+        mNestedPullDistance = Math.max(0f, mNestedPullDistance + dy);
+        mVelocityTracker.addSample(mNestedPullDistance, eventTime);
+
+        if (!mIsBeingDragged) {
+            if (mNestedPullDistance > 0f) {
+                mIsBeingDragged = true;
+                return RESULT_PULL_STARTED;
+            }
+        } else if (mNestedPullDistance != mLastMotionY) {
+            mLastMotionY = mNestedPullDistance;
+            return onPull(mNestedPullDistance);
+        }
+        return RESULT_NONE;
+    }
+
+    /**
+     * End a nested pull, this is handled the same way as an ACTION_UP.
+     *
+     * @return the same results as {@link #onTouchEvent(int, float, float, long)} returns for
+     *         an ACTION_UP.
+     */
+    public int stopNestedPull(long eventTime) {
+        if (!mIsNestedPull) {
+            return RESULT_NONE;
+        }
+        mIsNestedPull = false;
+        return onTouchEvent(ACTION_UP, 0f, mNestedPullDistance, eventTime);
+    }
+
+    public boolean isNestedPull() {
+        return mIsNestedPull;
+    }
+
+    /**
+     * @return how far a nested pull has been pulled in pixels.
+     */
+    public float getNestedPullDistance() {
+        return mNestedPullDistance;
+    }
+
+    private void onRelease(boolean fromUp) {
+        final float scrollLength = mLastMotionY - mPullBeginY;
+        if (mLastMotionY < 0f || scrollLength >= mScrollNeededForRefresh) {
+            // There was no pull, or it has already gone past the refresh distance
+            return;
+        }
+
+        final float velocity = mVelocityTracker.getVelocity();
+        if (fromUp && mFlingProjectionTime > 0f && velocity >= mMinFlingVelocity) {
+            final float projectedLength = scrollLength + velocity * mFlingProjectionTime / 1000f;
+            updatePull(Math.min(projectedLength,
+                    mScrollNeededForRefresh * MAX_FLING_FRACTION));
+            mReleaseAdjusted = true;
+        } else if (mPredictionTime > 0f) {
+            // Drop the prediction, the release uses where the finger really was
+            updatePull(scrollLength);
+            mReleaseAdjusted = true;
+        }
+    }
+
+    private void updatePull(float scrollLength) {
+        mPullFraction = scrollLength / mScrollNeededForRefresh;
+        mPullPercentage = MenuPositionMapper.getPercentage(mPullFraction, 100);
+        mSelectedMenuIndex = MenuPositionMapper.lookup(mMenuPositionTable, mPullPercentage);
+    }
+
+    /**
+     * @return how far the finger is expected to move in the prediction time, using a linear
+     *         extrapolation of the estimated velocity. It is clamped to the touch slop so that a
+     *         noisy estimate can not make the header jump.
+     */
+    private float getPredictedDistance() {
+        if (mPredictionTime <= 0f) {
+            return 0f;
+        }
+        final float distance = mVelocityTracker.getVelocity() * mPredictionTime / 1000f;
+        return Math.max(-mTouchSlop, Math.min(mTouchSlop, distance));
+    }
+
+    /**
+     * Resets any gesture in progress.
+     */
+    public void reset() {
+        mIsBeingDragged = false;
+        mInitialMotionY = mLastMotionY = mPullBeginY = -1f;
+        mPullFraction = 0f;
+        mPullPercentage = 0;
+        mSelectedMenuIndex = MenuPositionMapper.NO_POSITION;
+        mReleaseAdjusted = false;
+        mIsNestedPull = false;
+        mNestedPullDistance = 0f;
+        mVelocityTracker.clear();
+    }
+
+    /**
+     * @return one of {@link #STATE_IDLE}, {@link #STATE_ARMED} or {@link #STATE_DRAGGING}.
+     */
+    public int getState() {
+        if (mIsBeingDragged) return STATE_DRAGGING;
+        return mInitialMotionY > 0f || mIsNestedPull ? STATE_ARMED : STATE_IDLE;
+    }
+
+    public boolean isBeingDragged() {
+        return mIsBeingDragged;
+    }
+
+    /**
+     * @return value between 0.0f and 1.0f depending on how far the user has pulled.
+     */
+    public float getPullFraction() {
+        return mPullFraction;
+    }
+
+    /**
+     * @return value from 0 to 100 used to select the menu item.
+     */
+    public int getPullPercentage() {
+        return mPullPercentage;
+    }
+
+    /**
+     * @return the index of the menu item under the current pull or
+     *         {@link MenuPositionMapper#NO_POSITION}.
+     */
+    public int getSelectedMenuIndex() {
+        return mSelectedMenuIndex;
+    }
+
+    /**
+     * @return true if the pull fraction, percentage and menu index were changed when the pull
+     *         was released, because a prediction was dropped or a fling was projected. The header
+     *         should then be updated before the release is handled.
+     */
+    public boolean isReleaseAdjusted() {
+        return mReleaseAdjusted;
+    }
+
+    /**
+     * @return the estimated vertical velocity of the finger in pixels per second.
+     */
+    public float getVelocityY() {
+        return mVelocityTracker.getVelocity();
+    }
+
+    /**
+     * @return the estimated vertical acceleration of the finger in pixels per second squared.
+     */
+    public float getAccelerationY() {
+        return mVelocityTracker.getAcceleration();
+    }
+
+    public long getLastEventTime() {
+        return mLastEventTime;
+    }
+}
@@ -0,0 +1,138 @@
+package al.shkurti.pullmenu.library.gesture;
+
+/**
+ * Estimates the vertical velocity and acceleration of the finger from the most recent touch
+ * samples, including the historical samples which are batched into a single ACTION_MOVE.
+ * <p/>
+ * The samples are kept in a fixed size ring buffer and fitted with a least squares quadratic,
+ * so adding samples and computing the estimate never allocates.
+ */
+public final class PullVelocityTracker {
+
+    private static final int MAX_SAMPLES = 10;
+
+    /**
+     * Samples older than this, relative to the newest sample, are ignored.
+     */
+    private static final long HORIZON_MS = 100;
+
+    private final float[] mY = new float[MAX_SAMPLES];
+    private final long[] mTime = new long[MAX_SAMPLES];
+    private int mNewest = -1;
+    private int mCount;
+
+    private boolean mComputed;
+    private float mVelocity, mAcceleration;
+
+    /**
+     * Add a sample.
+     *
+     * @param y position of the finger in pixels
+     * @param eventTime time of the sample in milliseconds
+     */
+    public void addSample(float y, long eventTime) {
+        if (mCount > 0 && eventTime < mTime[mNewest]) {
+            // Out of order samples, start again
+            clear();
+        }
+        mNewest = (mNewest + 1) % MAX_SAMPLES;
+        mY[mNewest] = y;
+        mTime[mNewest] = eventTime;
+        if (mCount < MAX_SAMPLES) mCount++;
+        mComputed = false;
+    }
+
+    public void clear() {
+        mNewest = -1;
+        mCount = 0;
+        mComputed = false;
+        mVelocity = mAcceleration = 0f;
+    }
+
+    /**
+     * @return the velocity in pixels per second, positive when the finger moves down.
+     */
+    public float getVelocity() {
+        compute();
+        return mVelocity;
+    }
+
+    /**
+     * @return the acceleration in pixels per second squared, positive when the finger speeds up
+     *         downwards.
+     */
+    public float getAcceleration() {
+        compute();
+        return mAcceleration;
+    }
+
+    /**
+     * @return the time of the newest sample in milliseconds, or -1 if there are none.
+     */
+    public long getLatestTime() {
+        return mCount > 0 ? mTime[mNewest] : -1;
+    }
+
+    /**
+     * @return the position of the newest sample.
+     */
+    public float getLatestY() {
+        return mCount > 0 ? mY[mNewest] : 0f;
+    }
+
+    private void compute() {
+        if (mComputed) return;
+        mComputed = true;
+        mVelocity = mAcceleration = 0f;
+
+        final long newestTime = mCount > 0 ? mTime[mNewest] : 0;
+        final float newestY = mCount > 0 ? mY[mNewest] : 0f;
+
+        // Sums for the normal equations, with time in seconds relative to the newest sample
+        double s0 = 0, s1 = 0, s2 = 0, s3 = 0, s4 = 0;
+        double sy = 0, sty = 0, st2y = 0;
+        int n = 0;
+        for (int i = 0, index = mNewest; i < mCount; i++) {
+            final long age = newestTime - mTime[index];
+            if (age > HORIZON_MS) break;
+
+            final double t = -age / 1000.0;
+            final double y = mY[index] - newestY;
+            final double t2 = t * t;
+            s0 += 1;
+            s1 += t;
+            s2 += t2;
+            s3 += t2 * t;
+            s4 += t2 * t2;
+            sy += y;
+            sty += t * y;
+            st2y += t2 * y;
+            n++;
+
+            index = index == 0 ? MAX_SAMPLES - 1 : index - 1;
+        }
+
+        if (n >= 3) {
+            // Fit y = a + b * t + c * t^2, velocity is b and acceleration is 2c at t = 0
+            final double det = s0 * (s2 * s4 - s3 * s3) - s1 * (s1 * s4 - s2 * s3)
+                    + s2 * (s1 * s3 - s2 * s2);
+            if (det != 0) {
+                final double b = (s0 * (sty * s4 - s3 * st2y) - sy * (s1 * s4 - s2 * s3)
+                        + s2 * (s1 * st2y - sty * s2)) / det;
+                final double c = (s0 * (s2 * st2y - sty * s3) - s1 * (s1 * st2y - sty * s2)
+                        + sy * (s1 * s3 - s2 * s2)) / det;
+                mVelocity = (float) b;
+                mAcceleration = (float) (2 * c);
+                return;
+            }
+        }
+
+        if (n >= 2) {
+            // Not enough samples for a curve, fit a line instead
+            final double det = s0 * s2 - s1 * s1;
+            if (det != 0) {
+                mVelocity = (float) ((s0 * sty - s1 * sy) / det);
+            }
+        }
+    }
+}
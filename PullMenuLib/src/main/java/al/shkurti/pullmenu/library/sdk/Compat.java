@@ -2,6 +2,7 @@ package al.shkurti.pullmenu.library.sdk;
 
 import android.os.Build;
 import android.view.View;
+import android.view.ViewPropertyAnimator;
 
 public class Compat {
 
@@ -23,4 +24,37 @@ public class Compat {
         }
     }
 
+    /**
+     * @return true if {@code view} reports its scroll to its parents with nested scrolling, which
+     *         is only dispatched on Lollipop and above.
+     */
+    public static boolean isNestedScrollingEnabled(View view) {
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.LOLLIPOP) {
+            return CompatV21.isNestedScrollingEnabled(view);
+        }
+        return false;
+    }
+
+    /**
+     * @return true if {@link #startWithLayer(ViewPropertyAnimator, Runnable)} can use a hardware
+     *         layer.
+     */
+    public static boolean canAnimateWithLayer() {
+        return Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN;
+    }
+
+    /**
+     * Start {@code animator} with a hardware layer on its view for the duration of the animation.
+     *
+     * @param endAction run when the animation ends, but not when it is cancelled. Can be null.
+     */
+    public static void startWithLayer(ViewPropertyAnimator animator, Runnable endAction) {
+        if (canAnimateWithLayer()) {
+            CompatV16.startWithLayer(animator, endAction);
+        } else {
+            // Nothing to run the end action with, callers are expected to check first
+            animator.start();
+        }
+    }
+
 }
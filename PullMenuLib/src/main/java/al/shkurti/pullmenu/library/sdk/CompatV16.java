@@ -1,6 +1,7 @@
 package al.shkurti.pullmenu.library.sdk;
 
 import android.view.View;
+import android.view.ViewPropertyAnimator;
 
 class CompatV16 {
 
@@ -8,4 +9,12 @@ class CompatV16 {
         view.postOnAnimation(runnable);
     }
 
+    static void startWithLayer(ViewPropertyAnimator animator, Runnable endAction) {
+        animator.withLayer();
+        if (endAction != null) {
+            animator.withEndAction(endAction);
+        }
+        animator.start();
+    }
+
 }
@@ -0,0 +1,11 @@
+package al.shkurti.pullmenu.library.sdk;
+
+import android.view.View;
+
+class CompatV21 {
+
+    static boolean isNestedScrollingEnabled(View view) {
+        return view.isNestedScrollingEnabled();
+    }
+
+}
@@ -22,35 +22,39 @@ package al.shkurti.pullmenu.library.slidingtabstrip;
 import java.util.ArrayList;
 import java.util.Locale;
 
+import android.animation.LayoutTransition;
 import android.annotation.SuppressLint;
 import android.content.Context;
 import android.content.res.ColorStateList;
 import android.content.res.TypedArray;
 import android.graphics.Canvas;
+import android.graphics.Color;
 import android.graphics.Paint;
 import android.graphics.Paint.Style;
 import android.graphics.Typeface;
 import android.os.Build;
-import android.os.Handler;
 import android.os.Parcel;
 import android.os.Parcelable;
-import android.support.v4.util.Pair;
 import android.support.v4.view.ViewCompat;
 import android.support.v4.view.ViewPager.OnPageChangeListener;
+import android.text.TextPaint;
 import android.util.AttributeSet;
 import android.util.DisplayMetrics;
 import android.util.Log;
+import android.util.SparseArray;
 import android.util.TypedValue;
 import android.view.LayoutInflater;
 import android.view.View;
 import android.view.ViewGroup;
 import android.view.ViewTreeObserver.OnGlobalLayoutListener;
+import android.view.ViewTreeObserver.OnPreDrawListener;
 import android.widget.HorizontalScrollView;
 import android.widget.LinearLayout;
 import android.widget.TextView;
 
 import al.shkurti.pullmenu.R;
-import al.shkurti.pullmenu.library.DefaultHeaderTransformer;
+import al.shkurti.pullmenu.library.gesture.MenuPositionMapper;
+import al.shkurti.pullmenu.library.slidingtabstrip.TitleLayoutCache.TitleLayout;
 
 
 public class MenuSlidingTabStrip extends HorizontalScrollView {
@@ -58,6 +62,17 @@ public class MenuSlidingTabStrip extends HorizontalScrollView {
     private static final float OPAQUE = 1.0f;
     private static final float HALF_TRANSP = 0.5f;
 
+    /**
+     * Every tab is an inflated TextView inside the strip.
+     */
+    public static final int RENDER_MODE_VIEWS = 0;
+
+    /**
+     * The titles are drawn by the strip itself, so there are no tab views to measure and lay out.
+     * Tab backgrounds are not drawn in this mode.
+     */
+    public static final int RENDER_MODE_CANVAS = 1;
+
     public interface CustomTabProvider {
         public View getCustomTabView(ViewGroup parent, int position);
     }
@@ -100,6 +115,11 @@ public class MenuSlidingTabStrip extends HorizontalScrollView {
     private int currentPosition = -2;
     private float currentPositionOffset = 0f;
 
+    // Continuous indicator: where the indicator is, in tabs, or -1 when it is at currentPosition
+    private boolean continuousIndicator = false;
+    private float indicatorPosition = -1f;
+    private float[] zoneCentres = new float[0];
+
     private Paint rectPaint;
     private Paint dividerPaint;
 
@@ -130,6 +150,8 @@ public class MenuSlidingTabStrip extends HorizontalScrollView {
     private int tabTypefaceSelectedStyle = Typeface.BOLD;
 
     private int scrollOffset;
+    private final float[] indicatorCoordinates = new float[2];
+    private boolean firstTabLayoutListenerAdded;
     private int lastScrollX = 0;
 
     private int tabBackgroundResId = R.drawable.background_tab;
@@ -138,6 +160,41 @@ public class MenuSlidingTabStrip extends HorizontalScrollView {
     
     private ArrayList<String> mMenuArray;
 
+    // Menu item for every pull percentage, rebuilt whenever the items or the weights change
+    private final byte[] positionTable = new byte[MenuPositionMapper.TABLE_SIZE];
+    private float[] positionWeights;
+
+    // Tab views which are no longer shown, by layout, so they can be reused instead of inflated.
+    // Each pool keeps at most a screen of tabs plus the window margins
+    private static final int MAX_RECYCLED_TABS = 16;
+    private final SparseArray<ArrayList<View>> recycledTabs = new SparseArray<ArrayList<View>>();
+    private int tabLayoutResId = R.layout.tab;
+    private boolean dataSetLayoutListenerAdded;
+
+    private int renderMode = RENDER_MODE_VIEWS;
+
+    // Windowed tabs: only the tab views from windowFirst to windowLast exist
+    private static final int WINDOW_MARGIN = 2;
+    private boolean windowed = false;
+    private int windowFirst = 0, windowLast = -1;
+    // The tabs the window should hold, worked out by computeWindow()
+    private int nextWindowFirst, nextWindowLast;
+    private boolean windowUpdateScheduled, windowUpdateCancelsDraw;
+
+    // Canvas render mode and windowed tabs: the titles as drawn and the tab geometry, relative to
+    // tabsContainer
+    private String[] tabTitles = new String[0];
+    private float[] tabTextWidths = new float[0];
+    private float[] tabLefts = new float[0];
+    private float[] tabWidths = new float[0];
+    private float tabsWidth;
+    // The tab styled as selected, which can differ from currentPosition
+    private int selectedTab = -1;
+    private TextView[] tabTitleViews = new TextView[0];
+    private TextPaint tabTextPaint;
+    private TextPaint tabTextSelectedPaint;
+    private final TitleLayoutCache titleLayoutCache;
+
     public MenuSlidingTabStrip(Context context) {
         this(context, null);
     }
@@ -210,6 +267,9 @@ public class MenuSlidingTabStrip extends HorizontalScrollView {
         tabTypefaceSelectedStyle = a.getInt(R.styleable.MenuSlidingTabStrip_mstsTextSelectedStyle, Typeface.BOLD);
         tabTextAlpha = a.getFloat(R.styleable.MenuSlidingTabStrip_mstsTextAlpha, HALF_TRANSP);
         tabTextSelectedAlpha = a.getFloat(R.styleable.MenuSlidingTabStrip_mstsTextSelectedAlpha, OPAQUE);
+        renderMode = a.getInt(R.styleable.MenuSlidingTabStrip_mstsRenderMode, renderMode);
+        continuousIndicator = a.getBoolean(R.styleable.MenuSlidingTabStrip_mstsContinuousIndicator, continuousIndicator);
+        windowed = a.getBoolean(R.styleable.MenuSlidingTabStrip_mstsWindowed, windowed);
         a.recycle();
 
         setMarginBottomTabContainer();
@@ -223,12 +283,20 @@ public class MenuSlidingTabStrip extends HorizontalScrollView {
         dividerPaint.setAntiAlias(true);
         dividerPaint.setStrokeWidth(dividerWidth);
 
+        tabTextPaint = new TextPaint(Paint.ANTI_ALIAS_FLAG);
+        tabTextPaint.setTextAlign(Paint.Align.CENTER);
+        tabTextSelectedPaint = new TextPaint(Paint.ANTI_ALIAS_FLAG);
+        tabTextSelectedPaint.setTextAlign(Paint.Align.CENTER);
+        titleLayoutCache = TitleLayoutCache.get(context);
+
         defaultTabLayoutParams = new LinearLayout.LayoutParams(LayoutParams.WRAP_CONTENT, LayoutParams.MATCH_PARENT);
         expandedTabLayoutParams = new LinearLayout.LayoutParams(0, LayoutParams.MATCH_PARENT, 1.0f);
 
         if (locale == null) {
             locale = getResources().getConfiguration().locale;
         }
+
+        MenuPositionMapper.fillTable(positionTable, 0, null);
     }
 
     private void setMarginBottomTabContainer() {
@@ -241,157 +309,82 @@ public class MenuSlidingTabStrip extends HorizontalScrollView {
   	
   	public void setArray(ArrayList<String> mList){
   		this.mMenuArray = mList;
+  		if (hasTabGeometry()) {
+  		    warmTitleLayouts();
+  		}
   		notifyDataSetChanged();// notifies view for the changes
   	}
 
+    /**
+     * Measure the titles in both styles ahead of time, so that the measurements are shared with
+     * every other strip showing the same titles. Only the modes which measure the titles
+     * themselves use the measurements, the tab views measure their own text.
+     */
+    private void warmTitleLayouts() {
+        updateTabTextPaints();
+        for (int i = 0, z = mMenuArray.size(); i < z; i++) {
+            final String title = mMenuArray.get(i);
+            titleLayoutCache.obtain(title, tabTextPaint, tabTypefaceStyle, textAllCaps, locale);
+            titleLayoutCache.obtain(title, tabTextSelectedPaint, tabTypefaceSelectedStyle,
+                    textAllCaps, locale);
+        }
+    }
+
   	/**
   	 * This method is called from 
   	 * DefaultHeaderTransformer class from onPulled(percentagePulled) method
   	 * @param position takes value from 0 to 100
   	 * */
     public void changeMenuIndicatorPosition(int position){
-    	
-		if (DefaultHeaderTransformer.MENU_INDICATOR_MIN_VALUE < position && position < 100) {
-			switch (tabCount) {
-			case 2:
-				setScrollForTwo(position);
-				break;
-			case 3:
-				setScrollForThree(position);
-				break;
-			case 4:
-				setScrollForFour(position);
-				break;
-			case 5:
-				setScrollForFive(position);
-				break;
-			case 6:
-				setScrollForSix(position);
-				break;
-
-			default:
-				break;
-			}
-		} else {
-            View tab = tabsContainer.getChildAt(0);
-            notSelected(tab);
-        }
-    	
-    }
-    
-    /**
-     * Scroll available when there are six items in pull menu
-     * 
-     * @param position 
-     */
-    private void setScrollForSix(int position) {
-        if (DefaultHeaderTransformer.MENU_INDICATOR_MIN_VALUE < position) {
-            if (position < 19) {
-                setScrollTo(0);
-            } else if (19 <= position && position < 34) {
-                setScrollTo(1);
-            } else if (34 <= position && position < 50) {
-                setScrollTo(2);
-            } else if (50 <= position && position < 66) {
-                setScrollTo(3);
-            } else if (66 <= position && position < 82) {
-                setScrollTo(4);
-            } else if (82 <= position && position < 100) {
-                setScrollTo(5);
-            }
-
-        } else {
-            View tab = tabsContainer.getChildAt(0);
-            notSelected(tab);
+        final int tabPosition = MenuPositionMapper.lookup(positionTable, position);
+        if (tabPosition != MenuPositionMapper.NO_POSITION) {
+            setScrollTo(tabPosition);
+        } else if (selectedTab == 0) {
+            selectedTab = -1;
+            setTabSelected(0, false);
         }
     }
 
-	/**
-     * Scroll available when there are five items in pull menu
-     * 
-     * @param position 
+    /**
+     * Like {@link #changeMenuIndicatorPosition(int)}, but in the continuous indicator mode the
+     * indicator follows the exact percentage, moving between the tabs instead of jumping.
+     *
+     * @param percentage value from 0 to 100 depending on how far the user has pulled
      */
-    private void setScrollForFive(int position) {
-        if (DefaultHeaderTransformer.MENU_INDICATOR_MIN_VALUE < position) {
-            if (position < 22) {
-                setScrollTo(0);
-            } else if (22 <= position && position < 42) {
-                setScrollTo(1);
-            } else if (42 <= position && position < 62) {
-                setScrollTo(2);
-            } else if (62 <= position && position < 82) {
-                setScrollTo(3);
-            } else if (82 <= position && position < 100) {
-                setScrollTo(4);
+    public void changeMenuIndicatorPosition(float percentage) {
+        final int roundedPercentage = Math.round(percentage);
+        final int tabPosition = MenuPositionMapper.lookup(positionTable, roundedPercentage);
+        if (!continuousIndicator || tabPosition == MenuPositionMapper.NO_POSITION) {
+            if (indicatorPosition >= 0f) {
+                // Leaving the continuous indicator between the tabs, put it back on its tab
+                indicatorPosition = -1f;
+                invalidate();
             }
-
-        } else {
-            View tab = tabsContainer.getChildAt(0);
-            notSelected(tab);
+            changeMenuIndicatorPosition(roundedPercentage);
+            return;
         }
-    }
 
-	/**
-     * Scroll available when there are four items in pull menu
-     * 
-     * @param position 
-     */
-    private void setScrollForFour(int position) {
-        if (DefaultHeaderTransformer.MENU_INDICATOR_MIN_VALUE < position) {
-            if (position < 27) {
-                setScrollTo(0);
-            } else if (27 <= position && position < 52) {
-                setScrollTo(1);
-            } else if (52 <= position && position < 77) {
-                setScrollTo(2);
-            } else if (77 <= position && position < 100) {
-                setScrollTo(3);
-            }
-        } else {
-            View tab = tabsContainer.getChildAt(0);
-            notSelected(tab);
+        updateIndicatorCoordinates();
+        final float previousLeft = indicatorCoordinates[0], previousRight = indicatorCoordinates[1];
+
+        currentPosition = tabPosition;
+        currentPositionOffset = 0f;
+        indicatorPosition = MenuPositionMapper.getFractionalPosition(zoneCentres, tabCount, percentage);
+        if (selectedTab != tabPosition) {
+            final int previousTab = selectedTab;
+            selectedTab = tabPosition;
+            setTabSelected(previousTab, false);
+            setTabSelected(tabPosition, true);
         }
-    }
 
-	/**
-     * Scroll available when there are three items in pull menu
-     * 
-     * @param position 
-     */
-    private void setScrollForThree(int position) {
-        if (DefaultHeaderTransformer.MENU_INDICATOR_MIN_VALUE < position) {
-            if (position < 35) {
-                setScrollTo(0);
-            } else if (35 <= position && position < 68) {
-                setScrollTo(1);
-            } else if (68 <= position && position < 100) {
-                setScrollTo(2);
-            }
-        } else {
-            View tab = tabsContainer.getChildAt(0);
-            notSelected(tab);
+        // Scrolling redraws everything, otherwise only redraw where the indicator was and is
+        if (!scrollToIndicator()) {
+            final float left = Math.min(previousLeft, indicatorCoordinates[0]) + padding;
+            final float right = Math.max(previousRight, indicatorCoordinates[1]) + padding;
+            invalidate((int) left, getHeight() - indicatorHeight, (int) Math.ceil(right), getHeight());
         }
     }
 
-	/**
-     * Scroll available when there are two items in pull menu
-     * 
-     * @param position 
-     */
-  	private void setScrollForTwo(int position) {
-		
-  		if(DefaultHeaderTransformer.MENU_INDICATOR_MIN_VALUE<position){
-            if( position<50){
-                setScrollTo(0);
-            }else if (50<=position && position < 100){
-                setScrollTo(1);
-            }
-        }else{
-               View tab = tabsContainer.getChildAt(0);
-               notSelected(tab);
-        }
-	}
-
 	public void setScrollTo(int position){
         if(currentPosition == position && position!=0){// these means that we are in that position so dont take further steps
             return;
@@ -399,106 +392,221 @@ public class MenuSlidingTabStrip extends HorizontalScrollView {
 
   		currentPosition = position;
         currentPositionOffset = 0;
-        int offset = tabCount > 0 ? (int) (0 * tabsContainer.getChildAt(position).getWidth()) : 0;
+        indicatorPosition = -1f;
+        int offset = 0;
         scrollToChild(position, offset);
-        invalidate();
-  		
-        //Full alpha for current item
-        View currentTab = tabsContainer.getChildAt(currentPosition);
-        selected(currentTab);
-        /*//Half transparent for prev item
-        if (currentPosition - 1 >= 0) {
-            View prevTab = tabsContainer.getChildAt(currentPosition - 1);
-            notSelected(prevTab);
-        }
-        //Half transparent for next item
-        if (currentPosition + 1 <= mMenuArray.size() - 1) {
-            View nextTab = tabsContainer.getChildAt(currentPosition + 1);
-            notSelected(nextTab);
-        }*/
-        
-        for (int i = 0; i < tabCount; i++) {
-        	if(!(i==currentPosition)){
-        		View tab = tabsContainer.getChildAt(i);
-                notSelected(tab);
-        	}
+
+        // Only the previously selected tab and the new one need restyling
+        final int previousTab = selectedTab;
+        selectedTab = position;
+        if (renderMode != RENDER_MODE_CANVAS) {
+            invalidate();
+        }
+        if (previousTab != position) {
+            setTabSelected(previousTab, false);
+            setTabSelected(position, true);
         }
-  	
   	}
 
     public void notifyDataSetChanged() {
-        tabsContainer.removeAllViews();
         tabCount = mMenuArray.size();//pager.getAdapter().getCount();
-        View tabView;
-        for (int i = 0; i < tabCount; i++) {
+        updatePositionTable();
 
-           /* if (pager.getAdapter() instanceof CustomTabProvider) {
-                tabView = ((CustomTabProvider) pager.getAdapter()).getCustomTabView(this, i);
-            } else {*/
-                tabView = LayoutInflater.from(getContext()).inflate(R.layout.tab, this, false);
-            //}
+        // Every tab is bound, or drawn, as not selected
+        selectedTab = -1;
 
-            CharSequence title = mMenuArray.get(i);//pager.getAdapter().getPageTitle(i);
+        if (renderMode == RENDER_MODE_CANVAS) {
+            if (tabsContainer.getChildCount() > 0) {
+                recycleTabs();
+            }
+            measureTabs();
+            resetSelectionAfterLayout();
+            return;
+        }
 
-            addTab(i, title, tabView);
+        if (tabTitleViews.length < tabCount) {
+            tabTitleViews = new TextView[tabCount];
         }
 
-        updateTabStyles();
-        getViewTreeObserver().addOnGlobalLayoutListener(new OnGlobalLayoutListener() {
+        if (usesWindow()) {
+            clearWindow();
+            measureTabs();
+            updateWindow();
+            resetSelectionAfterLayout();
+            return;
+        }
 
-            @SuppressWarnings("deprecation")
-            @SuppressLint("NewApi")
-            @Override
-            public void onGlobalLayout() {
+        if (tabCount == tabsContainer.getChildCount()) {
+            // Same number of tabs, so only the titles need to change
+            for (int i = 0; i < tabCount; i++) {
+                bindTab(i, tabsContainer.getChildAt(i), mMenuArray.get(i));
+            }
+        } else {
+            recycleTabs();
+            View tabView;
+            for (int i = 0; i < tabCount; i++) {
 
-                if (Build.VERSION.SDK_INT < Build.VERSION_CODES.JELLY_BEAN) {
-                    getViewTreeObserver().removeGlobalOnLayoutListener(this);
-                } else {
-                    getViewTreeObserver().removeOnGlobalLayoutListener(this);
-                }
- 
-              //TODO we should receive the position of view that we are
-              // and  the actions that it has
-                currentPosition =  -2;//pager.getCurrentItem();
-                currentPositionOffset = 0f;
-                scrollToChild(0, 0);
-                updateSelection(currentPosition);
+               /* if (pager.getAdapter() instanceof CustomTabProvider) {
+                    tabView = ((CustomTabProvider) pager.getAdapter()).getCustomTabView(this, i);
+                } else {*/
+                    tabView = obtainTabView(tabLayoutResId);
+                //}
+
+                CharSequence title = mMenuArray.get(i);//pager.getAdapter().getPageTitle(i);
+
+                addTab(i, title, tabView);
+            }
+
+            updateTabStyles();
+        }
+
+        resetSelectionAfterLayout();
+    }
+
+    /**
+     * Clear the selection and scroll back to the first tab once the tabs have been laid out.
+     */
+    private void resetSelectionAfterLayout() {
+        if (!dataSetLayoutListenerAdded) {
+            dataSetLayoutListenerAdded = true;
+            getViewTreeObserver().addOnGlobalLayoutListener(dataSetLayoutListener);
+        }
+    }
+
+    private final OnGlobalLayoutListener dataSetLayoutListener = new OnGlobalLayoutListener() {
+
+        @SuppressWarnings("deprecation")
+        @SuppressLint("NewApi")
+        @Override
+        public void onGlobalLayout() {
+
+            if (Build.VERSION.SDK_INT < Build.VERSION_CODES.JELLY_BEAN) {
+                getViewTreeObserver().removeGlobalOnLayoutListener(this);
+            } else {
+                getViewTreeObserver().removeOnGlobalLayoutListener(this);
             }
-        });
+            dataSetLayoutListenerAdded = false;
+            resetSelection();
+        }
+    };
+
+    private void resetSelection() {
+      //TODO we should receive the position of view that we are
+      // and  the actions that it has
+        currentPosition =  -2;//pager.getCurrentItem();
+        currentPositionOffset = 0f;
+        indicatorPosition = -1f;
+        scrollToChild(0, 0);
+        updateSelection(currentPosition);
+    }
+
+    /**
+     * Move the current tabs into the recycled pool of their layout.
+     */
+    private void recycleTabs() {
+        for (int i = 0, z = tabsContainer.getChildCount(); i < z; i++) {
+            recycleTabView(tabsContainer.getChildAt(i));
+        }
+        tabsContainer.removeAllViews();
+    }
+
+    private void recycleTabView(View tabView) {
+        ArrayList<View> pool = recycledTabs.get(tabLayoutResId);
+        if (pool == null) {
+            pool = new ArrayList<View>();
+            recycledTabs.put(tabLayoutResId, pool);
+        }
+        if (pool.size() < MAX_RECYCLED_TABS) {
+            pool.add(tabView);
+        }
+    }
+
+    /**
+     * @return a recycled tab view of the given layout, or a newly inflated one if there is none.
+     */
+    private View obtainTabView(int layoutResId) {
+        final ArrayList<View> pool = recycledTabs.get(layoutResId);
+        if (pool != null && !pool.isEmpty()) {
+            return pool.remove(pool.size() - 1);
+        }
+        return LayoutInflater.from(getContext()).inflate(layoutResId, this, false);
+    }
+
+    private void updatePositionTable() {
+        final float[] weights = positionWeights != null && positionWeights.length >= tabCount
+                ? positionWeights : null;
+        MenuPositionMapper.fillTable(positionTable, tabCount, weights);
+        if (zoneCentres.length < tabCount) {
+            zoneCentres = new float[tabCount];
+        }
+        MenuPositionMapper.fillZoneCentres(positionTable, tabCount, zoneCentres);
     }
 
     private void addTab(final int position, CharSequence title, View tabView) {
+        bindTab(position, tabView, title);
+        tabsContainer.addView(tabView, position, shouldExpand ? expandedTabLayoutParams : defaultTabLayoutParams);
+    }
+
+    private void bindTab(int position, View tabView, CharSequence title) {
         TextView textView = (TextView) tabView.findViewById(R.id.tab_title);
+        tabTitleViews[position] = textView;
         if (textView != null) {
-            if (title != null) textView.setText(title);
+            if (title != null) {
+                // setAllCaps() sticks on ICS and above, but before that the title has to be upper
+                // cased every time it is set
+                if (textAllCaps && Build.VERSION.SDK_INT < Build.VERSION_CODES.ICE_CREAM_SANDWICH) {
+                    title = title.toString().toUpperCase(locale);
+                }
+                textView.setText(title);
+            }
+            // Recycled tabs may still be styled as selected. setTypeface() can request a layout,
+            // so only call it if the selected style actually differs
+            if (tabTypefaceSelectedStyle != tabTypefaceStyle) {
+                textView.setTypeface(tabTypeface, tabTypefaceStyle);
+            }
             float alpha = /*currentPosition/*pager.getCurrentItem()*/ /*== position ? tabTextSelectedAlpha : */tabTextAlpha;
             ViewCompat.setAlpha(textView, alpha);
         }
-
-        tabsContainer.addView(tabView, position, shouldExpand ? expandedTabLayoutParams : defaultTabLayoutParams);
     }
 
     private void updateTabStyles() {
+        if (renderMode == RENDER_MODE_CANVAS) {
+            if (mMenuArray != null) measureTabs();
+            return;
+        }
+        if (usesWindow()) {
+            // The widths may have changed, so rebuild the window from the new geometry
+            if (mMenuArray != null) {
+                clearWindow();
+                measureTabs();
+                updateWindow();
+            }
+            return;
+        }
         for (int i = 0; i < tabCount; i++) {
-            View v = tabsContainer.getChildAt(i);
-            v.setBackgroundResource(tabBackgroundResId);
-            v.setPadding(tabPadding, v.getPaddingTop(), tabPadding, v.getPaddingBottom());
-            TextView tab_title = (TextView) v.findViewById(R.id.tab_title);
-
-            if (tab_title != null) {
-                tab_title.setTextSize(TypedValue.COMPLEX_UNIT_PX, tabTextSize);
-                tab_title.setTypeface(tabTypeface, /*currentPosition == i ? tabTypefaceSelectedStyle : */tabTypefaceStyle);
-                if (tabTextColor != null) {
-                    tab_title.setTextColor(tabTextColor);
-                }
-                // setAllCaps() is only available from API 14, so the upper case is made manually if we are on a
-                // pre-ICS-build
-                if (textAllCaps) {
-                    if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.ICE_CREAM_SANDWICH) {
-                        tab_title.setAllCaps(true);
-                    } else {
-                        tab_title.setText(tab_title.getText().toString().toUpperCase(locale));
-                    }
+            styleTab(tabsContainer.getChildAt(i), tabTitleViews[i]);
+        }
+        // The loop above styled every tab as not selected
+        setTabSelected(selectedTab, true);
+    }
+
+    private void styleTab(View v, TextView tab_title) {
+        v.setBackgroundResource(tabBackgroundResId);
+        v.setPadding(tabPadding, v.getPaddingTop(), tabPadding, v.getPaddingBottom());
+
+        if (tab_title != null) {
+            tab_title.setTextSize(TypedValue.COMPLEX_UNIT_PX, tabTextSize);
+            tab_title.setTypeface(tabTypeface, /*currentPosition == i ? tabTypefaceSelectedStyle : */tabTypefaceStyle);
+            if (tabTextColor != null) {
+                tab_title.setTextColor(tabTextColor);
+            }
+            // setAllCaps() is only available from API 14, so the upper case is made manually if we are on a
+            // pre-ICS-build
+            if (textAllCaps) {
+                if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.ICE_CREAM_SANDWICH) {
+                    tab_title.setAllCaps(true);
+                } else {
+                    tab_title.setText(tab_title.getText().toString().toUpperCase(locale));
                 }
             }
         }
@@ -509,7 +617,7 @@ public class MenuSlidingTabStrip extends HorizontalScrollView {
             return;
         }
 
-        int newScrollX = tabsContainer.getChildAt(position).getLeft() + offset;
+        int newScrollX = (int) getTabLeft(position) + offset;
         if (position > 0 || offset > 0) {
 
             //Half screen offset.
@@ -517,51 +625,270 @@ public class MenuSlidingTabStrip extends HorizontalScrollView {
             //- Or tabs start at the begging (no padding) scrolling when indicator gets
             //  to the middle of the view width
             newScrollX -= scrollOffset;
-            Pair<Float, Float> lines = getIndicatorCoordinates();
-            newScrollX += ((lines.second - lines.first) / 2);
+            updateIndicatorCoordinates();
+            newScrollX += ((indicatorCoordinates[1] - indicatorCoordinates[0]) / 2);
         }
 
         if (newScrollX != lastScrollX) {
             lastScrollX = newScrollX;
-            smoothScrollTo(newScrollX, 0);
+            if (continuousIndicator) {
+                // Don't leave a scroll animation running for the next pull to fight with
+                scrollTo(newScrollX, 0);
+            } else {
+                smoothScrollTo(newScrollX, 0);
+            }
+        }
+    }
+
+    /**
+     * Continuous indicator: scroll straight to where the indicator is, so that it is tracked
+     * every frame without starting a scroll animation.
+     *
+     * @return true if the strip scrolled.
+     */
+    private boolean scrollToIndicator() {
+        updateIndicatorCoordinates();
+        float newScrollX = indicatorCoordinates[0];
+        // Ease in the half screen offset over the first tab, scrollToChild() jumps to it
+        final float centring = Math.min(1f, indicatorPosition);
+        newScrollX += centring * ((indicatorCoordinates[1] - indicatorCoordinates[0]) / 2 - scrollOffset);
+
+        if ((int) newScrollX != lastScrollX) {
+            lastScrollX = (int) newScrollX;
+            scrollTo(lastScrollX, 0);
+            return true;
         }
+        return false;
     }
 
-    private Pair<Float, Float> getIndicatorCoordinates() {
+    /**
+     * Update {@link #indicatorCoordinates} with the left and right of the indicator line.
+     */
+    private void updateIndicatorCoordinates() {
         // default: line below current tab  // this is done because i had enter negative vaule for the begging of currentposition
-        View currentTab = tabsContainer.getChildAt(currentPosition < 0 ? 0: currentPosition );
-        float lineLeft = currentTab.getLeft();
-        float lineRight = currentTab.getRight();
+        final int currentTab;
+        final float positionOffset;
+        if (indicatorPosition >= 0f) {
+            currentTab = (int) indicatorPosition;
+            positionOffset = indicatorPosition - currentTab;
+        } else {
+            currentTab = currentPosition < 0 ? 0 : currentPosition;
+            positionOffset = currentPositionOffset;
+        }
+        float lineLeft = getTabLeft(currentTab);
+        float lineRight = getTabRight(currentTab);
 
         // if there is an offset, start interpolating left and right coordinates between current and next tab
-        if (currentPositionOffset > 0f && currentPosition < tabCount - 1) {
+        if (positionOffset > 0f && currentTab < tabCount - 1) {
 
-            View nextTab = tabsContainer.getChildAt(currentPosition + 1);
-            final float nextTabLeft = nextTab.getLeft();
-            final float nextTabRight = nextTab.getRight();
+            final float nextTabLeft = getTabLeft(currentTab + 1);
+            final float nextTabRight = getTabRight(currentTab + 1);
 
-            lineLeft = (currentPositionOffset * nextTabLeft + (1f - currentPositionOffset) * lineLeft);
-            lineRight = (currentPositionOffset * nextTabRight + (1f - currentPositionOffset) * lineRight);
+            lineLeft = (positionOffset * nextTabLeft + (1f - positionOffset) * lineLeft);
+            lineRight = (positionOffset * nextTabRight + (1f - positionOffset) * lineRight);
         }
-        return new Pair<Float, Float>(lineLeft, lineRight);
+        indicatorCoordinates[0] = lineLeft;
+        indicatorCoordinates[1] = lineRight;
     }
 
     @Override
     protected void onLayout(boolean changed, int l, int t, int r, int b) {
         if (isPaddingMiddle || padding > 0) {
             //Make sure tabContainer is bigger than the HorizontalScrollView to be able to scroll
-            tabsContainer.setMinimumWidth(getWidth());
+            tabsContainer.setMinimumWidth(getMinimumTabsWidth());
             //Clipping padding to false to see the tabs while we pass them swiping
             setClipToPadding(false);
         }
 
-        if (tabsContainer.getChildCount() > 0) {
-            tabsContainer
-                    .getChildAt(0)
-                    .getViewTreeObserver()
-                    .addOnGlobalLayoutListener(firstTabGlobalLayoutListener);
+        // The listener removes itself once it has run, so only add it again after that
+        if (!firstTabLayoutListenerAdded
+                && (tabsContainer.getChildCount() > 0 || hasTabGeometry() && tabCount > 0)) {
+            firstTabLayoutListenerAdded = true;
+            getViewTreeObserver().addOnGlobalLayoutListener(firstTabGlobalLayoutListener);
         }
         super.onLayout(changed, l, t, r, b);
+
+        if (hasTabGeometry() && shouldExpand) {
+            layoutTabs();
+        }
+        if (usesWindow()) {
+            // Adding and removing tabs requests a layout, so don't do it during this one
+            scheduleWindowUpdate(true);
+        }
+    }
+
+    @Override
+    protected void onDetachedFromWindow() {
+        super.onDetachedFromWindow();
+        if (windowUpdateScheduled) {
+            windowUpdateScheduled = false;
+            getViewTreeObserver().removeOnPreDrawListener(windowUpdateListener);
+        }
+        // Don't hold on to the recycled tabs of a strip which is no longer shown
+        recycledTabs.clear();
+    }
+
+    @Override
+    protected void onScrollChanged(int l, int t, int oldl, int oldt) {
+        super.onScrollChanged(l, t, oldl, oldt);
+        if (usesWindow()) {
+            // Most scroll steps stay within the window, and the margins hide a late update
+            scheduleWindowUpdate(false);
+        }
+    }
+
+    /**
+     * @return true if the tab geometry comes from {@link #measureTabs()} instead of the tab views.
+     */
+    private boolean hasTabGeometry() {
+        return renderMode == RENDER_MODE_CANVAS || usesWindow();
+    }
+
+    private boolean usesWindow() {
+        return windowed && renderMode == RENDER_MODE_VIEWS;
+    }
+
+    /**
+     * Windowed tabs: update the window before the next draw if it needs to change. The update
+     * runs from a pre-draw listener, so that it never changes the tabs during a layout pass.
+     *
+     * @param cancelDraw whether to skip the next frame when the window changes, so that it is
+     *        not drawn before the new tabs have been laid out
+     */
+    private void scheduleWindowUpdate(boolean cancelDraw) {
+        if (tabCount == 0 || !computeWindow()) {
+            return;
+        }
+        windowUpdateCancelsDraw |= cancelDraw;
+        if (!windowUpdateScheduled) {
+            windowUpdateScheduled = true;
+            getViewTreeObserver().addOnPreDrawListener(windowUpdateListener);
+        }
+    }
+
+    private final OnPreDrawListener windowUpdateListener = new OnPreDrawListener() {
+
+        @Override
+        public boolean onPreDraw() {
+            getViewTreeObserver().removeOnPreDrawListener(this);
+            windowUpdateScheduled = false;
+            final boolean cancelDraw = windowUpdateCancelsDraw;
+            windowUpdateCancelsDraw = false;
+            return !(usesWindow() && updateWindow() && cancelDraw);
+        }
+    };
+
+    /**
+     * Work out which tabs are on screen, plus a few either side, into {@link #nextWindowFirst}
+     * and {@link #nextWindowLast}.
+     *
+     * @return true if they differ from the tabs in the window.
+     */
+    private boolean computeWindow() {
+        // The tabs container starts after the strip's padding
+        final float visibleLeft = getScrollX() - padding;
+        final float visibleRight = visibleLeft + getWidth();
+        // Binary search for the first tab which ends after visibleLeft, this runs on every scroll
+        int first = 0, high = tabCount - 1;
+        while (first < high) {
+            final int mid = (first + high) >>> 1;
+            if (tabLefts[mid] + tabWidths[mid] <= visibleLeft) {
+                first = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        int last = first;
+        while (last < tabCount - 1 && tabLefts[last + 1] < visibleRight) {
+            last++;
+        }
+        nextWindowFirst = Math.max(0, first - WINDOW_MARGIN);
+        nextWindowLast = Math.min(tabCount - 1, last + WINDOW_MARGIN);
+        return nextWindowFirst != windowFirst || nextWindowLast != windowLast;
+    }
+
+    /**
+     * Windowed tabs: make sure there are tab views for the tabs which are on screen, plus a few
+     * either side, and recycle the rest. The container's left padding stands in for the tabs
+     * before the window.
+     *
+     * @return true if the window changed.
+     */
+    private boolean updateWindow() {
+        if (tabCount == 0) {
+            clearWindow();
+            return false;
+        }
+        if (!computeWindow()) {
+            return false;
+        }
+        final int first = nextWindowFirst, last = nextWindowLast;
+        if (windowLast < windowFirst || first > windowLast || last < windowFirst) {
+            // Nothing to keep
+            clearWindow();
+            windowFirst = first;
+            windowLast = first - 1;
+        }
+        while (windowFirst < first) {
+            recycleWindowTab(0, windowFirst++);
+        }
+        while (windowLast > last) {
+            recycleWindowTab(tabsContainer.getChildCount() - 1, windowLast--);
+        }
+        while (windowFirst > first) {
+            addWindowTab(--windowFirst, 0);
+        }
+        while (windowLast < last) {
+            addWindowTab(++windowLast, tabsContainer.getChildCount());
+        }
+
+        final int paddingLeft = Math.round(tabLefts[windowFirst]);
+        if (tabsContainer.getPaddingLeft() != paddingLeft) {
+            tabsContainer.setPadding(paddingLeft, 0, 0, 0);
+        }
+        return true;
+    }
+
+    private void addWindowTab(int position, int index) {
+        final View tabView = obtainTabView(tabLayoutResId);
+        bindTab(position, tabView, mMenuArray.get(position));
+        styleTab(tabView, tabTitleViews[position]);
+        if (position == selectedTab) {
+            setTabSelected(position, true);
+        }
+
+        // Round the edges rather than the widths, so the rounding errors don't add up
+        final int width = Math.round(tabLefts[position] + tabWidths[position])
+                - Math.round(tabLefts[position]);
+        ViewGroup.LayoutParams lp = tabView.getLayoutParams();
+        if (!(lp instanceof LinearLayout.LayoutParams)
+                || lp == defaultTabLayoutParams || lp == expandedTabLayoutParams) {
+            // Inflated tabs get the strip's layout params, and the shared layout params of the
+            // other modes must never change. The new ones stay with the tab when it is recycled
+            lp = new LinearLayout.LayoutParams(width, LayoutParams.MATCH_PARENT);
+        } else {
+            lp.width = width;
+        }
+        tabsContainer.addView(tabView, index, lp);
+    }
+
+    private void recycleWindowTab(int index, int position) {
+        final View tabView = tabsContainer.getChildAt(index);
+        tabsContainer.removeViewAt(index);
+        tabTitleViews[position] = null;
+        recycleTabView(tabView);
+    }
+
+    private void clearWindow() {
+        if (tabsContainer.getChildCount() > 0) {
+            recycleTabs();
+        }
+        for (int i = 0; i < tabTitleViews.length; i++) {
+            tabTitleViews[i] = null;
+        }
+        windowFirst = 0;
+        windowLast = -1;
+        tabsContainer.setPadding(0, 0, 0, 0);
     }
 
     private OnGlobalLayoutListener firstTabGlobalLayoutListener = new OnGlobalLayoutListener() {
@@ -570,16 +897,17 @@ public class MenuSlidingTabStrip extends HorizontalScrollView {
 		@SuppressLint("NewApi")
 		@Override
         public void onGlobalLayout() {
-            View view = tabsContainer.getChildAt(0);
-
             if (Build.VERSION.SDK_INT < Build.VERSION_CODES.JELLY_BEAN) {
                 getViewTreeObserver().removeGlobalOnLayoutListener(this);
             } else {
                 getViewTreeObserver().removeOnGlobalLayoutListener(this);
             }
+            firstTabLayoutListenerAdded = false;
+
+            if (tabCount == 0) return;
 
             if (isPaddingMiddle) {
-                int mHalfWidthFirstTab = view.getWidth() / 2;
+                int mHalfWidthFirstTab = (int) (getTabRight(0) - getTabLeft(0)) / 2;
                 padding = getWidth() / 2 - mHalfWidthFirstTab;
             }
             setPadding(padding, getPaddingTop(), padding, getPaddingBottom());
@@ -587,6 +915,125 @@ public class MenuSlidingTabStrip extends HorizontalScrollView {
         }
     };
 
+    private float getTabLeft(int position) {
+        if (hasTabGeometry()) {
+            return tabLefts[position];
+        }
+        return tabsContainer.getChildAt(position).getLeft();
+    }
+
+    private float getTabRight(int position) {
+        if (hasTabGeometry()) {
+            return tabLefts[position] + tabWidths[position];
+        }
+        return tabsContainer.getChildAt(position).getRight();
+    }
+
+    private int getMinimumTabsWidth() {
+        int minimumWidth = isPaddingMiddle || padding > 0 ? getWidth() : 0;
+        if (hasTabGeometry()) {
+            // There are no tab views, or not all of them, to give the container its width
+            minimumWidth = Math.max(minimumWidth, (int) Math.ceil(tabsWidth));
+        }
+        return minimumWidth;
+    }
+
+    /**
+     * Canvas render mode: measure the titles and work out where every tab goes.
+     */
+    private void measureTabs() {
+        if (tabTitles.length < tabCount) {
+            tabTitles = new String[tabCount];
+            tabTextWidths = new float[tabCount];
+            tabLefts = new float[tabCount];
+            tabWidths = new float[tabCount];
+        }
+        updateTabTextPaints();
+
+        tabsWidth = 0f;
+        for (int i = 0; i < tabCount; i++) {
+            final String title = mMenuArray.get(i);
+            final TitleLayout layout = titleLayoutCache.obtain(title, tabTextPaint,
+                    tabTypefaceStyle, textAllCaps, locale);
+            final TitleLayout selectedLayout = titleLayoutCache.obtain(title, tabTextSelectedPaint,
+                    tabTypefaceSelectedStyle, textAllCaps, locale);
+            tabTitles[i] = layout.text;
+            // Reserve room for the wider of the two styles, so selecting a tab never moves the others
+            tabTextWidths[i] = Math.max(layout.width, selectedLayout.width);
+            tabsWidth += tabTextWidths[i] + 2 * tabPadding;
+        }
+        layoutTabs();
+
+        tabsContainer.setMinimumWidth(getMinimumTabsWidth());
+        invalidate();
+    }
+
+    private void layoutTabs() {
+        // Expanded tabs share the width of the container equally, like weighted tab views do
+        final float expandedWidth = shouldExpand && tabCount > 0
+                ? Math.max(tabsContainer.getWidth(), tabsWidth) / tabCount : 0f;
+        float left = 0f;
+        for (int i = 0; i < tabCount; i++) {
+            tabLefts[i] = left;
+            tabWidths[i] = shouldExpand ? expandedWidth : tabTextWidths[i] + 2 * tabPadding;
+            left += tabWidths[i];
+        }
+    }
+
+    private void updateTabTextPaints() {
+        // Use the colors an enabled tab view would get, selected or not
+        final int color = getTabTextColor(ENABLED_STATE_SET);
+        final int selectedColor = getTabTextColor(ENABLED_SELECTED_STATE_SET);
+        setupTabTextPaint(tabTextPaint, color, tabTypefaceStyle, tabTextAlpha);
+        setupTabTextPaint(tabTextSelectedPaint, selectedColor, tabTypefaceSelectedStyle, tabTextSelectedAlpha);
+    }
+
+    private int getTabTextColor(int[] state) {
+        if (tabTextColor == null) {
+            return Color.WHITE;
+        }
+        return tabTextColor.getColorForState(state, tabTextColor.getDefaultColor());
+    }
+
+    private void setupTabTextPaint(TextPaint paint, int color, int style, float alpha) {
+        final Typeface typeface = Typeface.create(tabTypeface, style);
+        paint.setTypeface(typeface);
+        // Fake the styles the typeface doesn't have, like TextView does
+        final int missingStyle = style & ~(typeface != null ? typeface.getStyle() : 0);
+        paint.setFakeBoldText((missingStyle & Typeface.BOLD) != 0);
+        paint.setTextSkewX((missingStyle & Typeface.ITALIC) != 0 ? -0.25f : 0f);
+        paint.setTextSize(tabTextSize);
+        paint.setColor(color);
+        paint.setAlpha((int) (Color.alpha(color) * alpha));
+    }
+
+    private void drawTabTitles(Canvas canvas) {
+        // Centre the titles vertically within the container, like the tab views are
+        final float baseline = (tabsContainer.getTop() + tabsContainer.getBottom()
+                - tabTextPaint.ascent() - tabTextPaint.descent()) / 2f;
+        final int left = getScrollX(), right = left + getWidth();
+
+        for (int i = 0; i < tabCount; i++) {
+            final float tabLeft = padding + tabLefts[i];
+            if (tabLeft + tabWidths[i] < left || tabLeft > right) {
+                continue;
+            }
+            canvas.drawText(tabTitles[i], tabLeft + tabWidths[i] / 2f, baseline,
+                    i == selectedTab ? tabTextSelectedPaint : tabTextPaint);
+        }
+    }
+
+    /**
+     * Canvas render mode: redraw only the area of a tab, including the indicator below it.
+     */
+    private void invalidateTab(int position) {
+        if (position < 0 || position >= tabCount) {
+            return;
+        }
+        final float tabLeft = padding + tabLefts[position];
+        invalidate((int) tabLeft, 0, (int) Math.ceil(tabLeft + tabWidths[position]), getHeight());
+    }
+
     @Override
     protected void onDraw(Canvas canvas) {
         super.onDraw(canvas);
@@ -595,10 +1042,13 @@ public class MenuSlidingTabStrip extends HorizontalScrollView {
         }
 
         final int height = getHeight();
+        if (renderMode == RENDER_MODE_CANVAS) {
+            drawTabTitles(canvas);
+        }
         // draw indicator line
         rectPaint.setColor(indicatorColor);
-        Pair<Float, Float> lines = getIndicatorCoordinates();
-        canvas.drawRect(lines.first + padding, height - indicatorHeight, lines.second + padding, height, rectPaint);
+        updateIndicatorCoordinates();
+        canvas.drawRect(indicatorCoordinates[0] + padding, height - indicatorHeight, indicatorCoordinates[1] + padding, height, rectPaint);
         // draw underline
         rectPaint.setColor(underlineColor);
         canvas.drawRect(padding, height - underlineHeight, tabsContainer.getWidth() + padding, height, rectPaint);
@@ -607,8 +1057,8 @@ public class MenuSlidingTabStrip extends HorizontalScrollView {
             dividerPaint.setStrokeWidth(dividerWidth);
             dividerPaint.setColor(dividerColor);
             for (int i = 0; i < tabCount - 1; i++) {
-                View tab = tabsContainer.getChildAt(i);
-                canvas.drawLine(tab.getRight(), dividerPadding, tab.getRight(), height - dividerPadding, dividerPaint);
+                final float tabRight = getTabRight(i);
+                canvas.drawLine(tabRight, dividerPadding, tabRight, height - dividerPadding, dividerPaint);
             }
         }
     }
@@ -623,25 +1073,31 @@ public class MenuSlidingTabStrip extends HorizontalScrollView {
 
 
     private void updateSelection(int position) {
-        for (int i = 0; i < tabCount; ++i) {
+        for (int i = 0; i < tabsContainer.getChildCount(); ++i) {
             View tv = tabsContainer.getChildAt(i);
             tv.setSelected(i == position);
         }
     }
 
-    private void notSelected(View tab) {
-        TextView title = (TextView) tab.findViewById(R.id.tab_title);
-        if (title != null) {
-            title.setTypeface(tabTypeface, tabTypefaceStyle);
-            ViewCompat.setAlpha(title, tabTextAlpha);
+    /**
+     * Style a tab as selected or not. In the canvas render mode the tab is redrawn, as the style
+     * is taken from {@link #selectedTab}.
+     */
+    private void setTabSelected(int position, boolean selected) {
+        if (position < 0 || position >= tabCount) {
+            return;
         }
-    }
-
-    private void selected(View tab) {
-        TextView title = (TextView) tab.findViewById(R.id.tab_title);
+        if (renderMode == RENDER_MODE_CANVAS) {
+            invalidateTab(position);
+            return;
+        }
+        final TextView title = tabTitleViews[position];
         if (title != null) {
-            title.setTypeface(tabTypeface, tabTypefaceSelectedStyle);
-            ViewCompat.setAlpha(title, tabTextSelectedAlpha);
+            // setTypeface() can request a layout, so only call it if the style actually changes
+            if (tabTypefaceSelectedStyle != tabTypefaceStyle) {
+                title.setTypeface(tabTypeface, selected ? tabTypefaceSelectedStyle : tabTypefaceStyle);
+            }
+            ViewCompat.setAlpha(title, selected ? tabTextSelectedAlpha : tabTextAlpha);
         }
     }
 
@@ -651,9 +1107,10 @@ public class MenuSlidingTabStrip extends HorizontalScrollView {
         SavedState savedState = (SavedState) state;
         super.onRestoreInstanceState(savedState.getSuperState());
         currentPosition = savedState.currentPosition;
-        if (currentPosition != 0 && tabsContainer.getChildCount() > 0) {
-            notSelected(tabsContainer.getChildAt(0));
-            selected(tabsContainer.getChildAt(currentPosition));
+        if (currentPosition >= 0 && currentPosition < tabCount && currentPosition != selectedTab) {
+            setTabSelected(selectedTab, false);
+            selectedTab = currentPosition;
+            setTabSelected(currentPosition, true);
         }
         requestLayout();
     }
@@ -817,6 +1274,63 @@ public class MenuSlidingTabStrip extends HorizontalScrollView {
 
     public void setAllCaps(boolean textAllCaps) {
         this.textAllCaps = textAllCaps;
+        if (renderMode == RENDER_MODE_CANVAS) {
+            updateTabStyles();
+        }
+    }
+
+    /**
+     * @param renderMode {@link #RENDER_MODE_VIEWS} or {@link #RENDER_MODE_CANVAS}
+     */
+    public void setRenderMode(int renderMode) {
+        if (this.renderMode == renderMode) {
+            return;
+        }
+        if (usesWindow()) {
+            clearWindow();
+        }
+        this.renderMode = renderMode;
+        if (mMenuArray != null) {
+            notifyDataSetChanged();
+        }
+    }
+
+    public int getRenderMode() {
+        return renderMode;
+    }
+
+    /**
+     * Only create tab views for the tabs which are on screen, plus a few either side, instead of
+     * one for every item. Meant for menus with a lot of items in the view render mode, the canvas
+     * render mode has no tab views at all.
+     */
+    public void setWindowed(boolean windowed) {
+        if (this.windowed == windowed) {
+            return;
+        }
+        if (usesWindow()) {
+            clearWindow();
+        }
+        this.windowed = windowed;
+        if (mMenuArray != null) {
+            notifyDataSetChanged();
+        }
+    }
+
+    public boolean isWindowed() {
+        return windowed;
+    }
+
+    /**
+     * Let the indicator follow the pull continuously, between the tabs, instead of jumping from
+     * tab to tab.
+     */
+    public void setContinuousIndicator(boolean continuousIndicator) {
+        this.continuousIndicator = continuousIndicator;
+    }
+
+    public boolean isContinuousIndicator() {
+        return continuousIndicator;
     }
 
     public void setTextSize(int textSizePx) {
@@ -860,6 +1374,35 @@ public class MenuSlidingTabStrip extends HorizontalScrollView {
         updateTabStyles();
     }
     
+    /**
+     * Set how much of the pull each tab takes up, for example to give the first tabs, which are
+     * the most recently selected ones, a wider zone. The weights apply to the tab positions, not
+     * to the items, and are ignored while there are more tabs than weights.
+     *
+     * @param weights relative size of the zone of each tab, all positive, or null to go back to
+     *        the default zones
+     */
+    public void setPositionWeights(float... weights) {
+        if (weights != null) {
+            for (float weight : weights) {
+                if (!(weight > 0f)) {
+                    throw new IllegalArgumentException("weights must be positive");
+                }
+            }
+            weights = weights.clone();
+        }
+        this.positionWeights = weights;
+        updatePositionTable();
+    }
+
+    /**
+     * @return the table mapping the pull percentage to the tab which gets selected. The same
+     *         array is updated in place when the tabs change.
+     */
+    public byte[] getPositionTable() {
+        return positionTable;
+    }
+
     public int getSelectedPosition(){
     	return currentPosition;
     }
@@ -867,19 +1410,74 @@ public class MenuSlidingTabStrip extends HorizontalScrollView {
     public String getSelectedField(){
     	return mMenuArray.get(currentPosition);
     }
+
+    /**
+     * @return the menu item at {@code position}.
+     */
+    public String getField(int position){
+    	return mMenuArray.get(position);
+    }
     
+    /**
+     * Move the selected item to the front of the menu, see {@link #reorderArray(int)}.
+     */
     public void reorderArray(){
-    	String temp = mMenuArray.get(currentPosition);
-    	mMenuArray.remove(currentPosition);
-    	mMenuArray.add(0,temp);
-    	
-    	final Handler handler = new Handler(); 
-    	handler.postDelayed(new Runnable() {
-    	  @Override 
-    	  public void run() { 
-    		  notifyDataSetChanged();
-    	  } 
-    	}, 200);
-    	
+        reorderArray(currentPosition);
+    }
+
+    /**
+     * Move the item at {@code position} to the front of the menu. The tab of the item is moved in
+     * place, the other tabs are left as they are.
+     */
+    public void reorderArray(int position){
+        if (position < 0 || position >= mMenuArray.size()) {
+            return;
+        }
+        currentPosition = position;
+        final String selected = mMenuArray.remove(currentPosition);
+        mMenuArray.add(0, selected);
+
+        if (hasTabGeometry()) {
+            // The geometry is arithmetic, so it is up to date as soon as it is re-measured
+            selectedTab = -1;
+            if (usesWindow()) {
+                clearWindow();
+                measureTabs();
+                updateWindow();
+            } else {
+                measureTabs();
+            }
+            resetSelection();
+            return;
+        }
+
+        // Nothing is selected any more
+        setTabSelected(selectedTab, false);
+        selectedTab = -1;
+
+        if (currentPosition > 0 && currentPosition < tabsContainer.getChildCount()) {
+            final View tab = tabsContainer.getChildAt(currentPosition);
+            tabsContainer.removeViewAt(currentPosition);
+            tabsContainer.addView(tab, 0);
+            final TextView title = tabTitleViews[currentPosition];
+            System.arraycopy(tabTitleViews, 0, tabTitleViews, 1, currentPosition);
+            tabTitleViews[0] = title;
+            // The indicator can only go back to the first tab once the move has been laid out
+            resetSelectionAfterLayout();
+        } else {
+            resetSelection();
+        }
+    }
+
+    /**
+     * Animate the tabs moving when an item is moved to the front of the menu, or when the tabs
+     * change.
+     */
+    public void setReorderAnimated(boolean animated) {
+        tabsContainer.setLayoutTransition(animated ? new LayoutTransition() : null);
+    }
+
+    public boolean isReorderAnimated() {
+        return tabsContainer.getLayoutTransition() != null;
     }
 }
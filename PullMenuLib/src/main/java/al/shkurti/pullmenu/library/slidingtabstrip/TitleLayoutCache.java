@@ -0,0 +1,141 @@
+package al.shkurti.pullmenu.library.slidingtabstrip;
+
+import java.util.Locale;
+
+import android.content.ComponentCallbacks2;
+import android.content.Context;
+import android.content.res.Configuration;
+import android.graphics.Typeface;
+import android.support.v4.util.LruCache;
+import android.text.TextPaint;
+
+/**
+ * Process wide cache of measured menu titles, shared by every {@link MenuSlidingTabStrip} so that
+ * the same titles are not measured again each time a header is inflated. The cache is bounded and
+ * is trimmed when the system is low on memory.
+ */
+final class TitleLayoutCache {
+
+    private static final int MAX_SIZE = 256;
+
+    private static TitleLayoutCache sInstance;
+
+    static synchronized TitleLayoutCache get(Context context) {
+        if (sInstance == null) {
+            sInstance = new TitleLayoutCache();
+            // The layout editor has no application context
+            final Context appContext = context.getApplicationContext();
+            (appContext != null ? appContext : context)
+                    .registerComponentCallbacks(sInstance.mTrimCallbacks);
+        }
+        return sInstance;
+    }
+
+    /**
+     * A title as it is drawn, with its width.
+     */
+    static final class TitleLayout {
+        final String text;
+        final float width;
+
+        TitleLayout(String text, float width) {
+            this.text = text;
+            this.width = width;
+        }
+    }
+
+    private final LruCache<Key, TitleLayout> mCache = new LruCache<Key, TitleLayout>(MAX_SIZE);
+    // Reused for the lookups, only copied when a new title is put in the cache
+    private final Key mLookupKey = new Key();
+
+    private TitleLayoutCache() {}
+
+    /**
+     * @param title the title of the menu item
+     * @param paint the paint the title is drawn with, already set up for {@code style}
+     * @param style the typeface style {@code paint} is set up for
+     * @param allCaps whether the title is drawn in upper case
+     * @param locale the locale used to upper case the title
+     * @return the title as drawn, measured with {@code paint}
+     */
+    synchronized TitleLayout obtain(String title, TextPaint paint, int style, boolean allCaps,
+            Locale locale) {
+        final Key key = mLookupKey;
+        key.set(title, paint.getTextSize(), paint.getTypeface(), style, allCaps, locale);
+        TitleLayout layout = mCache.get(key);
+        if (layout == null) {
+            final String text = allCaps ? title.toUpperCase(locale) : title;
+            layout = new TitleLayout(text, paint.measureText(text));
+            mCache.put(new Key(key), layout);
+        }
+        return layout;
+    }
+
+    private final ComponentCallbacks2 mTrimCallbacks = new ComponentCallbacks2() {
+        @Override
+        public void onTrimMemory(int level) {
+            if (level >= TRIM_MEMORY_MODERATE) {
+                mCache.evictAll();
+            } else if (level >= TRIM_MEMORY_BACKGROUND) {
+                mCache.trimToSize(mCache.maxSize() / 2);
+            }
+        }
+
+        @Override
+        public void onLowMemory() {
+            mCache.evictAll();
+        }
+
+        @Override
+        public void onConfigurationChanged(Configuration newConfig) {
+        }
+    };
+
+    private static final class Key {
+        String title;
+        float textSize;
+        Typeface typeface;
+        int style;
+        boolean allCaps;
+        Locale locale;
+
+        Key() {}
+
+        Key(Key other) {
+            set(other.title, other.textSize, other.typeface, other.style, other.allCaps,
+                    other.locale);
+        }
+
+        void set(String title, float textSize, Typeface typeface, int style, boolean allCaps,
+                Locale locale) {
+            this.title = title;
+            this.textSize = textSize;
+            this.typeface = typeface;
+            this.style = style;
+            this.allCaps = allCaps;
+            this.locale = locale;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof Key)) return false;
+            final Key other = (Key) o;
+            return textSize == other.textSize && style == other.style && allCaps == other.allCaps
+                    && title.equals(other.title)
+                    && (typeface == null ? other.typeface == null : typeface.equals(other.typeface))
+                    && (locale == null ? other.locale == null : locale.equals(other.locale));
+        }
+
+        @Override
+        public int hashCode() {
+            int result = title.hashCode();
+            result = 31 * result + Float.floatToIntBits(textSize);
+            result = 31 * result + (typeface != null ? typeface.hashCode() : 0);
+            result = 31 * result + style;
+            result = 31 * result + (allCaps ? 1 : 0);
+            result = 31 * result + (locale != null ? locale.hashCode() : 0);
+            return result;
+        }
+    }
+}